@@ -0,0 +1,383 @@
+package neuralnetworks.cnn;
+
+import utils.Initializers;
+import utils.ScratchArena;
+import utils.SimdMatrix;
+
+import java.util.Arrays;
+
+/**
+ * 2-D convolution layer (cross-correlation, like most deep learning libraries) with stride, zero padding and dilation.
+ * <p>
+ * Instead of the naive 7 nested loops, each image is lowered with im2col: every receptive field is copied into a column
+ * (NCHW) or row (NHWC) of a matrix, so the whole convolution becomes a single {@link SimdMatrix} matrix multiplication
+ * with the (outChannels x inChannels * kernelSize * kernelSize) weight matrix. The im2col buffer is kept and reused as long
+ * as the input shape does not change, so a layer instance must not be used from several threads at once. The per-image
+ * products are computed inside a {@link ScratchArena}, so after the first image they reuse the same result buffers.
+ * <p>
+ * The output has the same layout as the input. {@link #backward(FeatureMap, FeatureMap)} accumulates the weight and bias
+ * gradients and returns the gradient with respect to the input.
+ */
+public class Conv2D {
+    private final int inChannels;
+    private final int outChannels;
+    private final int kernelSize;
+    private final int stride;
+    private final int padding;
+    private final int dilation;
+
+    // (outChannels x inChannels * kernelSize * kernelSize), each row ordered by (channel, kernel row, kernel column)
+    private final SimdMatrix weights;
+    private final SimdMatrix bias; // (1 x outChannels)
+    private final SimdMatrix gradWeights;
+    private final SimdMatrix gradBias;
+
+    private SimdMatrix col; // im2col buffer, reused across calls with the same input shape
+
+    /**
+     * Creates a convolution with stride 1, no padding and no dilation.
+     */
+    public Conv2D(int inChannels, int outChannels, int kernelSize) {
+        this(inChannels, outChannels, kernelSize, 1, 0, 1);
+    }
+
+    /**
+     * @param inChannels Number of channels of the input.
+     * @param outChannels Number of filters, i.e. channels of the output.
+     * @param kernelSize Height and width of each filter.
+     * @param stride Step between two receptive fields.
+     * @param padding Number of zero pixels added on every side of the input.
+     * @param dilation Spacing between the filter taps (1 means a dense filter).
+     */
+    public Conv2D(int inChannels, int outChannels, int kernelSize, int stride, int padding, int dilation) {
+        if (inChannels < 1 || outChannels < 1 || kernelSize < 1 || stride < 1 || padding < 0 || dilation < 1) {
+            throw new IllegalArgumentException("Invalid convolution parameters");
+        }
+        this.inChannels = inChannels;
+        this.outChannels = outChannels;
+        this.kernelSize = kernelSize;
+        this.stride = stride;
+        this.padding = padding;
+        this.dilation = dilation;
+        this.weights = Initializers.he(new SimdMatrix(outChannels, inChannels * kernelSize * kernelSize), Initializers.randomSeed());
+        this.bias = new SimdMatrix(1, outChannels);
+        this.gradWeights = new SimdMatrix(outChannels, weights.cols);
+        this.gradBias = new SimdMatrix(1, outChannels);
+    }
+
+    public int outputHeight(int inputHeight) {
+        return outputSize(inputHeight);
+    }
+
+    public int outputWidth(int inputWidth) {
+        return outputSize(inputWidth);
+    }
+
+    private int outputSize(int inputSize) {
+        int span = dilation * (kernelSize - 1) + 1; // Extent of the dilated filter
+        if (inputSize + 2 * padding < span) {
+            throw new IllegalArgumentException("Input size " + inputSize + " is smaller than the filter extent " + span);
+        }
+        return (inputSize + 2 * padding - span) / stride + 1;
+    }
+
+    /**
+     * Forward pass.
+     * @param input The input images. Must have {@code inChannels} channels.
+     * @return The output feature map (batch, outChannels, outputHeight, outputWidth) in the layout of the input.
+     */
+    public FeatureMap forward(FeatureMap input) {
+        if (input.channels != inChannels) {
+            throw new IllegalArgumentException("Shape mismatch: expected " + inChannels + " channels but got " + input.shape());
+        }
+        int oh = outputHeight(input.height);
+        int ow = outputWidth(input.width);
+        int pixels = oh * ow;
+        int k = weights.cols;
+        FeatureMap output = new FeatureMap(input.batch, outChannels, oh, ow, input.layout);
+
+        if (input.layout == FeatureMap.Layout.NCHW) {
+            // Per image: (outChannels x k) * (k x pixels) = (outChannels x pixels), which is already the NCHW image
+            SimdMatrix col = colBuffer(k, pixels);
+            for (int n = 0; n < input.batch; n++) {
+                im2colChannelsFirst(input, n, oh, ow, col.data);
+                try (ScratchArena scratch = ScratchArena.open()) {
+                    SimdMatrix out = weights.matmul(col);
+                    int base = n * outChannels * pixels;
+                    for (int oc = 0; oc < outChannels; oc++) {
+                        float b = bias.data[oc];
+                        for (int p = 0; p < pixels; p++) {
+                            output.data[base + oc * pixels + p] = out.data[oc * pixels + p] + b;
+                        }
+                    }
+                }
+            }
+        } else {
+            // Per image: (pixels x k) * (k x outChannels) = (pixels x outChannels), which is already the NHWC image
+            SimdMatrix col = colBuffer(pixels, k);
+            SimdMatrix kernel = channelsLast(weights).transpose();
+            for (int n = 0; n < input.batch; n++) {
+                im2colChannelsLast(input, n, oh, ow, col.data);
+                try (ScratchArena scratch = ScratchArena.open()) {
+                    SimdMatrix out = col.matmul(kernel).addRowVector(bias);
+                    System.arraycopy(out.data, 0, output.data, n * pixels * outChannels, pixels * outChannels);
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Backward pass. Adds the gradients of the weights and bias to {@link #gradWeights()} and {@link #gradBias()}.
+     * @param input The input of the corresponding forward pass.
+     * @param gradOutput The gradient of the loss with respect to the output, in the layout of the input.
+     * @return The gradient of the loss with respect to the input.
+     */
+    public FeatureMap backward(FeatureMap input, FeatureMap gradOutput) {
+        int oh = outputHeight(input.height);
+        int ow = outputWidth(input.width);
+        if (input.channels != inChannels || gradOutput.batch != input.batch || gradOutput.channels != outChannels
+                || gradOutput.height != oh || gradOutput.width != ow || gradOutput.layout != input.layout) {
+            throw new IllegalArgumentException("Shape mismatch: " + input.shape() + " vs " + gradOutput.shape());
+        }
+        int pixels = oh * ow;
+        int k = weights.cols;
+        FeatureMap gradInput = new FeatureMap(input.batch, inChannels, input.height, input.width, input.layout);
+
+        if (input.layout == FeatureMap.Layout.NCHW) {
+            SimdMatrix col = colBuffer(k, pixels);
+            SimdMatrix gradOut = new SimdMatrix(outChannels, pixels);
+            SimdMatrix weightsT = weights.transpose();
+            for (int n = 0; n < input.batch; n++) {
+                im2colChannelsFirst(input, n, oh, ow, col.data);
+                System.arraycopy(gradOutput.data, n * outChannels * pixels, gradOut.data, 0, outChannels * pixels);
+
+                // dW += dOut * col^T, db += row sums of dOut, dCol = W^T * dOut
+                try (ScratchArena scratch = ScratchArena.open()) {
+                    gradWeights.addScaledInPlace(gradOut.matmul(col.transpose()), 1.0f);
+                    for (int oc = 0; oc < outChannels; oc++) {
+                        float sum = 0.0f;
+                        for (int p = 0; p < pixels; p++) sum += gradOut.data[oc * pixels + p];
+                        gradBias.data[oc] += sum;
+                    }
+                    col2imChannelsFirst(weightsT.matmul(gradOut).data, gradInput, n, oh, ow);
+                }
+            }
+        } else {
+            SimdMatrix col = colBuffer(pixels, k);
+            SimdMatrix gradOut = new SimdMatrix(pixels, outChannels);
+            SimdMatrix kernel = channelsLast(weights);
+            SimdMatrix gradKernel = new SimdMatrix(outChannels, k);
+            for (int n = 0; n < input.batch; n++) {
+                im2colChannelsLast(input, n, oh, ow, col.data);
+                System.arraycopy(gradOutput.data, n * pixels * outChannels, gradOut.data, 0, pixels * outChannels);
+
+                // dW += dOut^T * col, db += column sums of dOut, dCol = dOut * W
+                try (ScratchArena scratch = ScratchArena.open()) {
+                    gradKernel.addScaledInPlace(gradOut.transpose().matmul(col), 1.0f);
+                    for (int p = 0; p < pixels; p++) {
+                        for (int oc = 0; oc < outChannels; oc++) gradBias.data[oc] += gradOut.data[p * outChannels + oc];
+                    }
+                    col2imChannelsLast(gradOut.matmul(kernel).data, gradInput, n, oh, ow);
+                }
+            }
+            gradWeights.addScaledInPlace(channelsFirst(gradKernel), 1.0f);
+        }
+        return gradInput;
+    }
+
+    /**
+     * im2col for NCHW: row (c, ky, kx) of col holds the input pixel under that filter tap for every output pixel (y, x).
+     */
+    private void im2colChannelsFirst(FeatureMap input, int n, int oh, int ow, float[] col) {
+        int h = input.height;
+        int w = input.width;
+        int pixels = oh * ow;
+        int imageOffset = n * input.imageSize();
+        int row = 0;
+        for (int c = 0; c < inChannels; c++) {
+            for (int ky = 0; ky < kernelSize; ky++) {
+                for (int kx = 0; kx < kernelSize; kx++) {
+                    int rowOffset = row++ * pixels;
+                    int xShift = kx * dilation - padding; // Input column = x * stride + xShift
+                    for (int y = 0; y < oh; y++) {
+                        int iy = y * stride - padding + ky * dilation;
+                        int dst = rowOffset + y * ow;
+                        if (iy < 0 || iy >= h) {
+                            Arrays.fill(col, dst, dst + ow, 0.0f);
+                            continue;
+                        }
+                        int src = imageOffset + (c * h + iy) * w;
+                        if (stride == 1) {
+                            // Valid output columns form one contiguous run of the input row: copy it in one go
+                            int from = Math.min(ow, Math.max(0, -xShift));
+                            int to = Math.max(from, Math.min(ow, w - xShift));
+                            Arrays.fill(col, dst, dst + from, 0.0f);
+                            if (to > from) System.arraycopy(input.data, src + from + xShift, col, dst + from, to - from);
+                            Arrays.fill(col, dst + to, dst + ow, 0.0f);
+                        } else {
+                            for (int x = 0; x < ow; x++) {
+                                int ix = x * stride + xShift;
+                                col[dst + x] = ix >= 0 && ix < w ? input.data[src + ix] : 0.0f;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Inverse of {@link #im2colChannelsFirst}: adds every entry of col back to the input pixel it was copied from.
+     */
+    private void col2imChannelsFirst(float[] col, FeatureMap gradInput, int n, int oh, int ow) {
+        int h = gradInput.height;
+        int w = gradInput.width;
+        int pixels = oh * ow;
+        int imageOffset = n * gradInput.imageSize();
+        int row = 0;
+        for (int c = 0; c < inChannels; c++) {
+            for (int ky = 0; ky < kernelSize; ky++) {
+                for (int kx = 0; kx < kernelSize; kx++) {
+                    int rowOffset = row++ * pixels;
+                    int xShift = kx * dilation - padding;
+                    for (int y = 0; y < oh; y++) {
+                        int iy = y * stride - padding + ky * dilation;
+                        if (iy < 0 || iy >= h) continue;
+                        int src = rowOffset + y * ow;
+                        int dst = imageOffset + (c * h + iy) * w;
+                        for (int x = 0; x < ow; x++) {
+                            int ix = x * stride + xShift;
+                            if (ix >= 0 && ix < w) gradInput.data[dst + ix] += col[src + x];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * im2col for NHWC: row (y, x) of col holds the receptive field of output pixel (y, x), ordered (ky, kx, c),
+     * so that the channels of each tap are copied as one contiguous block.
+     */
+    private void im2colChannelsLast(FeatureMap input, int n, int oh, int ow, float[] col) {
+        int h = input.height;
+        int w = input.width;
+        int k = weights.cols;
+        int imageOffset = n * input.imageSize();
+        for (int y = 0; y < oh; y++) {
+            for (int x = 0; x < ow; x++) {
+                int rowOffset = (y * ow + x) * k;
+                for (int ky = 0; ky < kernelSize; ky++) {
+                    int iy = y * stride - padding + ky * dilation;
+                    for (int kx = 0; kx < kernelSize; kx++) {
+                        int ix = x * stride - padding + kx * dilation;
+                        int dst = rowOffset + (ky * kernelSize + kx) * inChannels;
+                        if (iy < 0 || iy >= h || ix < 0 || ix >= w) {
+                            Arrays.fill(col, dst, dst + inChannels, 0.0f);
+                        } else {
+                            System.arraycopy(input.data, imageOffset + (iy * w + ix) * inChannels, col, dst, inChannels);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Inverse of {@link #im2colChannelsLast}: adds every entry of col back to the input pixel it was copied from.
+     */
+    private void col2imChannelsLast(float[] col, FeatureMap gradInput, int n, int oh, int ow) {
+        int h = gradInput.height;
+        int w = gradInput.width;
+        int k = weights.cols;
+        int imageOffset = n * gradInput.imageSize();
+        for (int y = 0; y < oh; y++) {
+            for (int x = 0; x < ow; x++) {
+                int rowOffset = (y * ow + x) * k;
+                for (int ky = 0; ky < kernelSize; ky++) {
+                    int iy = y * stride - padding + ky * dilation;
+                    if (iy < 0 || iy >= h) continue;
+                    for (int kx = 0; kx < kernelSize; kx++) {
+                        int ix = x * stride - padding + kx * dilation;
+                        if (ix < 0 || ix >= w) continue;
+                        int src = rowOffset + (ky * kernelSize + kx) * inChannels;
+                        int dst = imageOffset + (iy * w + ix) * inChannels;
+                        for (int c = 0; c < inChannels; c++) gradInput.data[dst + c] += col[src + c];
+                    }
+                }
+            }
+        }
+    }
+
+    private SimdMatrix colBuffer(int rows, int cols) {
+        if (col == null || col.rows != rows || col.cols != cols) {
+            col = new SimdMatrix(rows, cols);
+        }
+        return col;
+    }
+
+    /**
+     * Reorders each row of a weight matrix from (c, ky, kx) to (ky, kx, c), the order of the NHWC im2col buffer.
+     */
+    private SimdMatrix channelsLast(SimdMatrix w) {
+        SimdMatrix result = new SimdMatrix(w.rows, w.cols);
+        int taps = kernelSize * kernelSize;
+        for (int oc = 0; oc < w.rows; oc++) {
+            int offset = oc * w.cols;
+            for (int c = 0; c < inChannels; c++) {
+                for (int t = 0; t < taps; t++) {
+                    result.data[offset + t * inChannels + c] = w.data[offset + c * taps + t];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Inverse of {@link #channelsLast}.
+     */
+    private SimdMatrix channelsFirst(SimdMatrix w) {
+        SimdMatrix result = new SimdMatrix(w.rows, w.cols);
+        int taps = kernelSize * kernelSize;
+        for (int oc = 0; oc < w.rows; oc++) {
+            int offset = oc * w.cols;
+            for (int c = 0; c < inChannels; c++) {
+                for (int t = 0; t < taps; t++) {
+                    result.data[offset + c * taps + t] = w.data[offset + t * inChannels + c];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The live weight matrix (outChannels x inChannels * kernelSize * kernelSize), element (oc, (c * kernelSize + ky) * kernelSize + kx).
+     */
+    public SimdMatrix weights() {
+        return weights;
+    }
+
+    /**
+     * @return The live bias vector (1 x outChannels).
+     */
+    public SimdMatrix bias() {
+        return bias;
+    }
+
+    public SimdMatrix gradWeights() {
+        return gradWeights;
+    }
+
+    public SimdMatrix gradBias() {
+        return gradBias;
+    }
+
+    /**
+     * Resets the accumulated gradients to zero.
+     */
+    public void zeroGrad() {
+        Arrays.fill(gradWeights.data, 0.0f);
+        Arrays.fill(gradBias.data, 0.0f);
+    }
+}
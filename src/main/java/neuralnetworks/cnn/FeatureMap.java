@@ -0,0 +1,88 @@
+package neuralnetworks.cnn;
+
+import utils.Initializers;
+
+/**
+ * A batch of multi-channel images (batch, channels, height, width) in a single contiguous array,
+ * stored either channels-first ({@link Layout#NCHW}) or channels-last ({@link Layout#NHWC}).
+ */
+public final class FeatureMap {
+    /**
+     * Memory layout of a feature map.
+     * NCHW stores each channel as a contiguous image (planes), NHWC stores all channels of a pixel next to each other.
+     */
+    public enum Layout { NCHW, NHWC }
+
+    public final int batch;
+    public final int channels;
+    public final int height;
+    public final int width;
+    public final Layout layout;
+    public final float[] data;
+
+    public FeatureMap(int batch, int channels, int height, int width, Layout layout) {
+        this(batch, channels, height, width, layout, new float[batch * channels * height * width]);
+    }
+
+    public FeatureMap(int batch, int channels, int height, int width, Layout layout, float[] data) {
+        if (data.length != batch * channels * height * width) {
+            throw new IllegalArgumentException("Data length " + data.length + " does not match shape (" + batch + ", " + channels + ", " + height + ", " + width + ")");
+        }
+        this.batch = batch;
+        this.channels = channels;
+        this.height = height;
+        this.width = width;
+        this.layout = layout;
+        this.data = data;
+    }
+
+    /**
+     * @return The position of element (n, c, y, x) in {@link #data} for this layout.
+     */
+    public int index(int n, int c, int y, int x) {
+        return layout == Layout.NCHW
+                ? ((n * channels + c) * height + y) * width + x
+                : ((n * height + y) * width + x) * channels + c;
+    }
+
+    public float get(int n, int c, int y, int x) {
+        return data[index(n, c, y, x)];
+    }
+
+    public void set(int n, int c, int y, int x, float value) {
+        data[index(n, c, y, x)] = value;
+    }
+
+    /**
+     * @return This feature map if it already has the given layout, otherwise a copy converted to it.
+     */
+    public FeatureMap toLayout(Layout target) {
+        if (target == layout) return this;
+        FeatureMap result = new FeatureMap(batch, channels, height, width, target);
+        for (int n = 0; n < batch; n++) {
+            for (int c = 0; c < channels; c++) {
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        result.data[result.index(n, c, y, x)] = data[index(n, c, y, x)];
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The per-image size (channels * height * width), which is also the offset between images in either layout.
+     */
+    public int imageSize() {
+        return channels * height * width;
+    }
+
+    public String shape() { return "(" + batch + ", " + channels + ", " + height + ", " + width + ", " + layout + ")"; }
+
+    public static FeatureMap random(int batch, int channels, int height, int width, Layout layout) {
+        FeatureMap map = new FeatureMap(batch, channels, height, width, layout);
+        Initializers.normal(map.data, 0.0f, 1.0f, Initializers.randomSeed());
+        return map;
+    }
+}
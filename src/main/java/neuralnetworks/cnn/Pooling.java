@@ -0,0 +1,118 @@
+package neuralnetworks.cnn;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vectorized max and average pooling over square windows (no padding).
+ * <p>
+ * In NHWC the channels of a pixel are contiguous, so each window is reduced for a whole vector of channels at once.
+ * In NCHW with stride 1, neighbouring output pixels read neighbouring input pixels, so a vector of output columns is
+ * computed at once; other strides fall back to a scalar loop.
+ */
+public final class Pooling {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private Pooling() {
+    }
+
+    /**
+     * @return The maximum of every (kernelSize x kernelSize) window, in the layout of the input.
+     */
+    public static FeatureMap maxPool(FeatureMap input, int kernelSize, int stride) {
+        return pool(input, kernelSize, stride, true);
+    }
+
+    /**
+     * @return The mean of every (kernelSize x kernelSize) window, in the layout of the input.
+     */
+    public static FeatureMap avgPool(FeatureMap input, int kernelSize, int stride) {
+        return pool(input, kernelSize, stride, false);
+    }
+
+    private static FeatureMap pool(FeatureMap input, int kernelSize, int stride, boolean max) {
+        if (kernelSize < 1 || stride < 1 || kernelSize > input.height || kernelSize > input.width) {
+            throw new IllegalArgumentException("Invalid pooling window " + kernelSize + " (stride " + stride + ") for " + input.shape());
+        }
+        int oh = (input.height - kernelSize) / stride + 1;
+        int ow = (input.width - kernelSize) / stride + 1;
+        FeatureMap output = new FeatureMap(input.batch, input.channels, oh, ow, input.layout);
+        if (input.layout == FeatureMap.Layout.NHWC) {
+            poolChannelsLast(input, output, kernelSize, stride, max);
+        } else {
+            poolChannelsFirst(input, output, kernelSize, stride, max);
+        }
+        return output;
+    }
+
+    private static void poolChannelsLast(FeatureMap in, FeatureMap out, int kernelSize, int stride, boolean max) {
+        int channels = in.channels;
+        int loopBound = SPECIES.loopBound(channels);
+        float scale = 1.0f / (kernelSize * kernelSize);
+        for (int n = 0; n < in.batch; n++) {
+            for (int y = 0; y < out.height; y++) {
+                for (int x = 0; x < out.width; x++) {
+                    int dst = out.index(n, 0, y, x);
+                    int c = 0;
+                    // Vectorized over channels
+                    for (; c < loopBound; c += SPECIES.length()) {
+                        var acc = max ? FloatVector.broadcast(SPECIES, Float.NEGATIVE_INFINITY) : FloatVector.zero(SPECIES);
+                        for (int ky = 0; ky < kernelSize; ky++) {
+                            for (int kx = 0; kx < kernelSize; kx++) {
+                                var v = FloatVector.fromArray(SPECIES, in.data, in.index(n, c, y * stride + ky, x * stride + kx));
+                                acc = max ? acc.max(v) : acc.add(v);
+                            }
+                        }
+                        (max ? acc : acc.mul(scale)).intoArray(out.data, dst + c);
+                    }
+                    // Tail loop
+                    for (; c < channels; c++) {
+                        out.data[dst + c] = window(in, n, c, y * stride, x * stride, kernelSize, max) * (max ? 1.0f : scale);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void poolChannelsFirst(FeatureMap in, FeatureMap out, int kernelSize, int stride, boolean max) {
+        int ow = out.width;
+        int loopBound = stride == 1 ? SPECIES.loopBound(ow) : 0;
+        float scale = 1.0f / (kernelSize * kernelSize);
+        for (int n = 0; n < in.batch; n++) {
+            for (int c = 0; c < in.channels; c++) {
+                for (int y = 0; y < out.height; y++) {
+                    int dst = out.index(n, c, y, 0);
+                    int x = 0;
+                    // Vectorized over output columns (stride 1 only: input columns x + kx are then contiguous)
+                    for (; x < loopBound; x += SPECIES.length()) {
+                        var acc = max ? FloatVector.broadcast(SPECIES, Float.NEGATIVE_INFINITY) : FloatVector.zero(SPECIES);
+                        for (int ky = 0; ky < kernelSize; ky++) {
+                            int src = in.index(n, c, y + ky, x);
+                            for (int kx = 0; kx < kernelSize; kx++) {
+                                var v = FloatVector.fromArray(SPECIES, in.data, src + kx);
+                                acc = max ? acc.max(v) : acc.add(v);
+                            }
+                        }
+                        (max ? acc : acc.mul(scale)).intoArray(out.data, dst + x);
+                    }
+                    // Tail (or strided) loop
+                    for (; x < ow; x++) {
+                        out.data[dst + x] = window(in, n, c, y * stride, x * stride, kernelSize, max) * (max ? 1.0f : scale);
+                    }
+                }
+            }
+        }
+    }
+
+    // Max or sum of one window, starting at input pixel (y0, x0)
+    private static float window(FeatureMap in, int n, int c, int y0, int x0, int kernelSize, boolean max) {
+        float acc = max ? Float.NEGATIVE_INFINITY : 0.0f;
+        for (int ky = 0; ky < kernelSize; ky++) {
+            for (int kx = 0; kx < kernelSize; kx++) {
+                float v = in.data[in.index(n, c, y0 + ky, x0 + kx)];
+                acc = max ? Math.max(acc, v) : acc + v;
+            }
+        }
+        return acc;
+    }
+}
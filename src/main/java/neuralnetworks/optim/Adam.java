@@ -0,0 +1,98 @@
+package neuralnetworks.optim;
+
+import jdk.incubator.vector.FloatVector;
+
+/**
+ * Adam, and AdamW with decoupled weight decay.
+ * <p>
+ * With g = gradScale * grad (plus weightDecay * p for Adam), one step at step count t is
+ * <pre>
+ * m = beta1 * m + (1 - beta1) * g
+ * v = beta2 * v + (1 - beta2) * g²
+ * p -= lr * (m / (1 - beta1^t)) / (sqrt(v / (1 - beta2^t)) + epsilon)    (AdamW: also p -= lr * weightDecay * p)
+ * </pre>
+ * The bias corrections only depend on t, so they are folded into two scalars per step instead of being applied per element.
+ */
+public class Adam extends Optimizer {
+    private final float beta1;
+    private final float beta2;
+    private final float epsilon;
+    private final float weightDecay;
+    private final boolean decoupled;
+
+    /**
+     * Adam with the usual defaults (beta1 0.9, beta2 0.999, epsilon 1e-8) and no weight decay.
+     */
+    public Adam(float learningRate) {
+        this(learningRate, 0.9f, 0.999f, 1e-8f, 0.0f, false);
+    }
+
+    /**
+     * @param beta1 Decay rate of the first moment, in [0, 1).
+     * @param beta2 Decay rate of the second moment, in [0, 1).
+     * @param epsilon Term added to the denominator for numerical stability.
+     * @param weightDecay Weight decay factor, 0 to disable.
+     * @param decoupled true for AdamW (the decay is applied to the weights directly), false for an L2 penalty added to the gradient.
+     */
+    public Adam(float learningRate, float beta1, float beta2, float epsilon, float weightDecay, boolean decoupled) {
+        super(learningRate);
+        if (beta1 < 0 || beta1 >= 1 || beta2 < 0 || beta2 >= 1 || !(epsilon > 0) || weightDecay < 0) {
+            throw new IllegalArgumentException("Invalid Adam parameters: beta1 " + beta1 + ", beta2 " + beta2 + ", epsilon " + epsilon + ", weight decay " + weightDecay);
+        }
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+        this.weightDecay = weightDecay;
+        this.decoupled = decoupled;
+    }
+
+    /**
+     * AdamW with the usual defaults and the given decoupled weight decay.
+     */
+    public static Adam adamW(float learningRate, float weightDecay) {
+        return new Adam(learningRate, 0.9f, 0.999f, 1e-8f, weightDecay, true);
+    }
+
+    @Override
+    int buffers() {
+        return 2;
+    }
+
+    @Override
+    long flopsPerElement() {
+        return 14;
+    }
+
+    @Override
+    void update(float[] p, float[] g, int length, float gradScale, State state) {
+        float lr = learningRate();
+        float b1 = beta1, b2 = beta2, eps = epsilon;
+        float l2 = decoupled ? 0.0f : weightDecay;
+        float keep = decoupled ? 1.0f - lr * weightDecay : 1.0f; // AdamW shrinks the weights before the gradient step
+        float stepSize = (float) (lr / (1.0 - Math.pow(b1, state.steps)));
+        float invSqrtCorrection2 = (float) (1.0 / Math.sqrt(1.0 - Math.pow(b2, state.steps)));
+        float[] m = state.buffers[0];
+        float[] v = state.buffers[1];
+        int loopBound = SPECIES.loopBound(length);
+        int i = 0;
+
+        for (; i < loopBound; i += SPECIES.length()) {
+            var vp = FloatVector.fromArray(SPECIES, p, i);
+            var vg = FloatVector.fromArray(SPECIES, g, i).mul(gradScale).add(vp.mul(l2));
+            var vm = FloatVector.fromArray(SPECIES, m, i).mul(b1).add(vg.mul(1.0f - b1));
+            var vv = FloatVector.fromArray(SPECIES, v, i).mul(b2).add(vg.mul(vg).mul(1.0f - b2));
+            vm.intoArray(m, i);
+            vv.intoArray(v, i);
+            var denom = vv.sqrt().mul(invSqrtCorrection2).add(eps);
+            vp.mul(keep).sub(vm.mul(stepSize).div(denom)).intoArray(p, i);
+        }
+        for (; i < length; i++) {
+            float gi = g[i] * gradScale + p[i] * l2;
+            float mi = m[i] * b1 + gi * (1.0f - b1);
+            float vi = v[i] * b2 + gi * gi * (1.0f - b2);
+            m[i] = mi;
+            v[i] = vi;
+            p[i] = p[i] * keep - mi * stepSize / ((float) Math.sqrt(vi) * invSqrtCorrection2 + eps);
+        }
+    }
+}
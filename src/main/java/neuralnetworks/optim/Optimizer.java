@@ -0,0 +1,121 @@
+package neuralnetworks.optim;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+import utils.Metrics;
+import utils.SimdMatrix;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Base class of the gradient descent optimizers.
+ * <p>
+ * {@link #step(SimdMatrix, SimdMatrix)} updates a parameter matrix in place from its gradient. Each optimizer does this in a
+ * single fused SIMD pass that reads the parameters, the gradient and its moment buffers and writes the parameters and
+ * moments back, without allocating any temporary. The moment buffers of a parameter are allocated on its first step and
+ * kept (by identity of the parameter matrix) for the following ones, so the hot path never allocates.
+ * <p>
+ * Gradient clipping by norm, if enabled, rescales the gradient of each parameter matrix to at most the maximum norm.
+ * The norm is computed in a read-only pass over the gradient, and the scale factor is folded into the update pass,
+ * so the gradient itself is left unchanged.
+ * <p>
+ * An optimizer is not thread-safe: all steps must be made from one thread at a time.
+ */
+public abstract class Optimizer {
+    static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private final Map<SimdMatrix, State> states = new IdentityHashMap<>();
+    private float learningRate;
+    private float maxGradNorm = Float.POSITIVE_INFINITY;
+
+    // Moment buffers and step count of one parameter matrix
+    static final class State {
+        final float[][] buffers;
+        long steps;
+
+        State(int count, int length) {
+            buffers = new float[count][length];
+        }
+    }
+
+    protected Optimizer(float learningRate) {
+        if (!(learningRate > 0)) {
+            throw new IllegalArgumentException("Learning rate must be positive: " + learningRate);
+        }
+        this.learningRate = learningRate;
+    }
+
+    /**
+     * Updates the parameters in place: one optimizer step for the given gradient.
+     * @param params The parameters to update.
+     * @param grads The gradient of the loss with respect to the parameters. Must have the same shape. Not modified.
+     */
+    public final void step(SimdMatrix params, SimdMatrix grads) {
+        if (params.rows != grads.rows || params.cols != grads.cols) {
+            throw new IllegalArgumentException("Shape mismatch: " + params.shape() + " vs " + grads.shape());
+        }
+        int length = params.rows * params.cols;
+        State state = states.computeIfAbsent(params, p -> new State(buffers(), length));
+        state.steps++;
+
+        float gradScale = 1.0f;
+        if (maxGradNorm != Float.POSITIVE_INFINITY) {
+            float norm = (float) Math.sqrt(grads.dot(grads));
+            if (norm > maxGradNorm) gradScale = maxGradNorm / norm;
+        }
+        update(params.data, grads.data, length, gradScale, state);
+        if (Metrics.enabled()) Metrics.kernel(Metrics.Kernel.OPTIMIZER, flopsPerElement() * length, Float.BYTES * (3L + 2L * buffers()) * length);
+    }
+
+    /**
+     * The fused update pass.
+     * @param gradScale Factor to apply to every gradient element (gradient clipping), 1 if the gradient is not clipped.
+     * @param state The moment buffers of this parameter and the number of steps made so far, including this one.
+     */
+    abstract void update(float[] params, float[] grads, int length, float gradScale, State state);
+
+    /**
+     * @return Number of moment buffers per parameter element (0 for plain SGD, 1 for momentum, 2 for Adam).
+     */
+    abstract int buffers();
+
+    // Floating-point operations per element of one step, for the metrics
+    abstract long flopsPerElement();
+
+    /**
+     * Enables gradient clipping: the gradient of each parameter matrix is rescaled to a Euclidean norm of at most maxNorm.
+     * @param maxNorm The maximum norm, or {@link Float#POSITIVE_INFINITY} to disable clipping.
+     */
+    public void setMaxGradNorm(float maxNorm) {
+        if (!(maxNorm > 0)) {
+            throw new IllegalArgumentException("Maximum gradient norm must be positive: " + maxNorm);
+        }
+        this.maxGradNorm = maxNorm;
+    }
+
+    public float maxGradNorm() {
+        return maxGradNorm;
+    }
+
+    /**
+     * Changes the learning rate for the following steps, e.g. from a learning rate schedule. The moments are kept.
+     */
+    public void setLearningRate(float learningRate) {
+        if (!(learningRate > 0)) {
+            throw new IllegalArgumentException("Learning rate must be positive: " + learningRate);
+        }
+        this.learningRate = learningRate;
+    }
+
+    public float learningRate() {
+        return learningRate;
+    }
+
+    /**
+     * Forgets the moments and step counts of all parameters, e.g. when training restarts from new weights.
+     */
+    public void reset() {
+        states.clear();
+    }
+}
@@ -0,0 +1,89 @@
+package neuralnetworks.optim;
+
+import jdk.incubator.vector.FloatVector;
+
+/**
+ * Stochastic gradient descent with optional momentum (classical or Nesterov) and L2 weight decay.
+ * <p>
+ * With g = gradScale * grad + weightDecay * p, one step is
+ * <ul>
+ *     <li>plain: p -= lr * g</li>
+ *     <li>momentum: v = momentum * v + g, p -= lr * v</li>
+ *     <li>Nesterov: v = momentum * v + g, p -= lr * (g + momentum * v)</li>
+ * </ul>
+ * which matches the PyTorch formulation (no dampening).
+ */
+public class Sgd extends Optimizer {
+    private final float momentum;
+    private final boolean nesterov;
+    private final float weightDecay;
+
+    /**
+     * Plain SGD without momentum or weight decay.
+     */
+    public Sgd(float learningRate) {
+        this(learningRate, 0.0f, false, 0.0f);
+    }
+
+    /**
+     * @param momentum Momentum factor in [0, 1), 0 for plain SGD.
+     * @param nesterov Whether to use Nesterov momentum (requires a momentum greater than 0).
+     * @param weightDecay L2 penalty added to the gradient, 0 to disable.
+     */
+    public Sgd(float learningRate, float momentum, boolean nesterov, float weightDecay) {
+        super(learningRate);
+        if (momentum < 0 || momentum >= 1 || (nesterov && momentum == 0) || weightDecay < 0) {
+            throw new IllegalArgumentException("Invalid SGD parameters: momentum " + momentum + ", nesterov " + nesterov + ", weight decay " + weightDecay);
+        }
+        this.momentum = momentum;
+        this.nesterov = nesterov;
+        this.weightDecay = weightDecay;
+    }
+
+    @Override
+    int buffers() {
+        return momentum == 0 ? 0 : 1;
+    }
+
+    @Override
+    long flopsPerElement() {
+        return momentum == 0 ? 4 : nesterov ? 8 : 6;
+    }
+
+    @Override
+    void update(float[] p, float[] g, int length, float gradScale, State state) {
+        float lr = learningRate();
+        float wd = weightDecay;
+        int loopBound = SPECIES.loopBound(length);
+        int i = 0;
+
+        if (momentum == 0) {
+            for (; i < loopBound; i += SPECIES.length()) {
+                var vp = FloatVector.fromArray(SPECIES, p, i);
+                var vg = FloatVector.fromArray(SPECIES, g, i).mul(gradScale).add(vp.mul(wd));
+                vp.sub(vg.mul(lr)).intoArray(p, i);
+            }
+            for (; i < length; i++) {
+                p[i] -= lr * (g[i] * gradScale + p[i] * wd);
+            }
+            return;
+        }
+
+        float mu = momentum;
+        float[] v = state.buffers[0];
+        for (; i < loopBound; i += SPECIES.length()) {
+            var vp = FloatVector.fromArray(SPECIES, p, i);
+            var vg = FloatVector.fromArray(SPECIES, g, i).mul(gradScale).add(vp.mul(wd));
+            var vv = FloatVector.fromArray(SPECIES, v, i).mul(mu).add(vg);
+            vv.intoArray(v, i);
+            var delta = nesterov ? vg.add(vv.mul(mu)) : vv;
+            vp.sub(delta.mul(lr)).intoArray(p, i);
+        }
+        for (; i < length; i++) {
+            float gi = g[i] * gradScale + p[i] * wd;
+            float vi = v[i] * mu + gi;
+            v[i] = vi;
+            p[i] -= lr * (nesterov ? gi + vi * mu : vi);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package neuralnetworks.perceptron;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.SimdMatrix;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Online (streaming) perceptron learning.
+ * Instead of looping over a fixed dataset for several epochs like {@link Perceptron#train(int)}, this learner
+ * consumes an unbounded stream of samples and applies the perceptron update rule to each sample exactly once.
+ * Memory stays constant: only the working weights, the optional averaging window and one sample at a time are kept.
+ * <p>
+ * The working weights are private to the learner and updated in place (no allocation per sample).
+ * Every {@code snapshotInterval} samples a copy is published to the target {@link Perceptron} with
+ * {@link Perceptron#swapWeights(SimdMatrix)}, so the target can serve predictions while learning continues.
+ * <p>
+ * With a window size greater than 0 the published weights are the average of the weights after each of the
+ * last {@code windowSize} samples (sliding-window averaged perceptron), which is much less noisy than the latest weights.
+ */
+public class OnlinePerceptron implements Flow.Subscriber<OnlinePerceptron.Sample> {
+    private static final Logger logger = LoggerFactory.getLogger(OnlinePerceptron.class);
+
+    /**
+     * One labelled sample of the stream.
+     * @param features The input features (including the bias input), same size as the weights.
+     * @param label The expected output: 0 or 1.
+     */
+    public record Sample(float[] features, int label) {
+    }
+
+    private final Perceptron target;
+    private final float learningRate;
+    private final int snapshotInterval;
+    private final int requestSize;
+
+    private final SimdMatrix weights; // Working weights, updated in place
+    private final SimdMatrix[] window; // Ring of the last windowSize weight vectors (empty if averaging is disabled)
+    private final SimdMatrix windowSum; // Running sum of the vectors in the window
+    private int windowNext;
+
+    private long samples;
+    private long updates;
+    private Flow.Subscription subscription;
+    private long pendingDemand;
+    private final CompletableFuture<Long> completion = new CompletableFuture<>();
+
+    /**
+     * @param target The perceptron whose weights are used as the starting point and which receives the snapshots.
+     * @param learningRate The learning rate of the update rule.
+     * @param windowSize Number of recent weight vectors to average for the snapshots, or 0 to publish the latest weights.
+     * @param snapshotInterval Number of samples between two published snapshots.
+     * @param requestSize Number of samples requested from the publisher at a time (backpressure).
+     */
+    public OnlinePerceptron(Perceptron target, float learningRate, int windowSize, int snapshotInterval, int requestSize) {
+        if (windowSize < 0 || snapshotInterval < 1 || requestSize < 1) {
+            throw new IllegalArgumentException("Window size must be >= 0, snapshot interval and request size >= 1.");
+        }
+        this.target = target;
+        this.learningRate = learningRate;
+        this.snapshotInterval = snapshotInterval;
+        this.requestSize = requestSize;
+
+        SimdMatrix initial = target.weightsSnapshot();
+        this.weights = new SimdMatrix(1, initial.columns(), initial.data.clone());
+        this.window = new SimdMatrix[windowSize];
+        for (int i = 0; i < windowSize; i++) {
+            window[i] = new SimdMatrix(1, initial.columns());
+        }
+        this.windowSum = new SimdMatrix(1, initial.columns());
+    }
+
+    /**
+     * Learns from a single sample: predicts it with the working weights and applies the perceptron update rule if it was wrong.
+     * @param features The input features, same size as the weights.
+     * @param label The expected output: 0 or 1.
+     * @return true if the weights were updated (the sample was misclassified).
+     */
+    public boolean learn(float[] features, int label) {
+        if (features.length != weights.columns()) {
+            throw new IllegalArgumentException("Input size does not match weight size.");
+        }
+        SimdMatrix x = new SimdMatrix(1, features.length, features);
+        int predicted = weights.dot(x) >= 0 ? 1 : 0;
+        int error = label - predicted;
+        if (error != 0) {
+            // w = w + learningRate * (y - predicted) * x, in place
+            weights.addScaledInPlace(x, learningRate * error);
+            updates++;
+        }
+
+        if (window.length > 0) {
+            // Slide the window: replace the oldest weight vector with the current one and keep the sum up to date
+            SimdMatrix oldest = window[windowNext];
+            windowSum.addScaledInPlace(oldest, -1);
+            System.arraycopy(weights.data, 0, oldest.data, 0, weights.data.length);
+            windowSum.addScaledInPlace(oldest, 1);
+            windowNext = (windowNext + 1) % window.length;
+            if (windowNext == 0) {
+                // Once per full turn, recompute the sum so float rounding errors do not build up over an unbounded stream
+                Arrays.fill(windowSum.data, 0);
+                for (SimdMatrix w : window) windowSum.addScaledInPlace(w, 1);
+            }
+        }
+
+        samples++;
+        if (samples % snapshotInterval == 0) {
+            publish();
+        }
+        return error != 0;
+    }
+
+    /**
+     * Learns from every sample of the iterator until it is exhausted. The samples are pulled one at a time.
+     * @param stream The sample source, possibly unbounded.
+     * @return The number of samples consumed.
+     */
+    public long consume(Iterator<Sample> stream) {
+        long consumed = 0;
+        while (stream.hasNext()) {
+            Sample sample = stream.next();
+            learn(sample.features, sample.label);
+            consumed++;
+        }
+        publish();
+        return consumed;
+    }
+
+    /**
+     * Publishes the current (window averaged) weights to the target perceptron.
+     */
+    public void publish() {
+        target.swapWeights(snapshot());
+    }
+
+    /**
+     * @return A copy of the weights that would be published: the window average, or the latest weights if averaging is disabled.
+     */
+    public SimdMatrix snapshot() {
+        long filled = Math.min(samples, window.length);
+        if (filled == 0) {
+            return new SimdMatrix(1, weights.columns(), weights.data.clone());
+        }
+        return windowSum.scale(1.0f / filled);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            subscription.cancel(); // Only one publisher at a time
+            return;
+        }
+        this.subscription = subscription;
+        pendingDemand = requestSize;
+        subscription.request(requestSize);
+    }
+
+    @Override
+    public void onNext(Sample sample) {
+        learn(sample.features, sample.label);
+        // Ask for the next chunk only once the previous one has been consumed, so a fast publisher cannot flood us
+        if (--pendingDemand == 0) {
+            pendingDemand = requestSize;
+            subscription.request(requestSize);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        publish();
+        logger.warn("Sample stream failed after {} samples.", samples, throwable);
+        completion.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        publish();
+        logger.info("Sample stream completed: {} samples, {} updates.", samples, updates);
+        completion.complete(samples);
+    }
+
+    /**
+     * @return A future completed with the number of samples seen once the publisher completes the stream.
+     */
+    public CompletableFuture<Long> completion() {
+        return completion;
+    }
+
+    public long sampleCount() {
+        return samples;
+    }
+
+    public long updateCount() {
+        return updates;
+    }
+}
@@ -2,30 +2,88 @@ package neuralnetworks.perceptron;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import utils.Checkpoint;
+import utils.DataLoader;
+import utils.Initializers;
+import utils.Metrics;
 import utils.SimdMatrix;
 
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.IntStream;
 
 public class Perceptron {
     private static final Logger logger = LoggerFactory.getLogger(Perceptron.class);
     private final float[][] inputs; // input[][0] is bias input (always 1)
     private final int[] outputs; // output values: 0 or 1
-    private SimdMatrix weights; // w[0] is bias weight (= -threshold)
+    // w[0] is bias weight (= -threshold).
+    // Published as an immutable snapshot: a matrix is never modified after it has been assigned to this field,
+    // updates always build a new matrix and publish it with a compare-and-set. Readers take one volatile read
+    // and then work on a consistent set of weights without any locking.
+    private volatile SimdMatrix weights;
     private final float learningRate;
+    // Draws the initial weights and the shuffle order. Seeded once, so repeated train() calls continue the sequence
+    private final Random random;
+    private static final String WEIGHTS_TENSOR = "weights"; // Name of the weight tensor in checkpoint files
+    private static final VarHandle WEIGHTS;
+
+    static {
+        try {
+            WEIGHTS = MethodHandles.lookup().findVarHandle(Perceptron.class, "weights", SimdMatrix.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     public Perceptron(float[][] inputs, int[] outputs, float learningRate) {
+        this(inputs, outputs, learningRate, Initializers.randomSeed());
+    }
+
+    /**
+     * @param seed Seed for the initial weights and the order in which samples are visited: the same seed, data and
+     *             sequence of train calls always train to the same weights.
+     */
+    public Perceptron(float[][] inputs, int[] outputs, float learningRate, long seed) {
         if (inputs.length != outputs.length) {
             throw new IllegalArgumentException("Number of input samples must match number of output samples.");
         }
         this.inputs = inputs;
         this.outputs = outputs;
         this.learningRate = learningRate;
+        this.random = new Random(seed);
         initializeWeights();
     }
 
+    // Perceptron without training data (restored from a checkpoint or learning online): it can only serve predictions
+    private Perceptron(SimdMatrix weights) {
+        this.inputs = new float[0][];
+        this.outputs = new int[0];
+        this.learningRate = 0;
+        this.random = new Random(Initializers.randomSeed());
+        this.weights = weights;
+    }
+
+    /**
+     * Creates a perceptron without a training dataset, with randomly initialized weights.
+     * Its weights are meant to be learned from a stream by an {@link OnlinePerceptron} or swapped in with {@link #swapWeights(SimdMatrix)}.
+     * @param inputSize Number of inputs, including the bias input.
+     */
+    public static Perceptron untrained(int inputSize) {
+        return new Perceptron(SimdMatrix.random(1, inputSize));
+    }
+
     public boolean train(int maxEpochs) {
+        if (inputs.length == 0) {
+            throw new IllegalStateException("Perceptron has no training data.");
+        }
         int columns = inputs[0].length; // Number of features (including bias)
         int epoch = 0;
         boolean converged = false;
@@ -35,13 +93,18 @@ public class Perceptron {
         logger.info("Starting training with learning rate: {}, max epochs: {}", learningRate, maxEpochs);
         while (!converged && epoch < maxEpochs) {
             converged = true;
-            Collections.shuffle(indices); // Shuffle indices to ensure random order of training samples each epoch
+            boolean metrics = Metrics.enabled();
+            long epochStart = metrics ? System.nanoTime() : 0;
+            long allocatedStart = metrics ? Metrics.threadAllocatedBytes() : 0;
+            int updates = 0;
+            Collections.shuffle(indices, random); // Shuffle indices to ensure random order of training samples each epoch
 
             for (int i : indices) {
                 SimdMatrix xVector = new SimdMatrix(1, columns, inputs[i]);
                 int y = outputs[i];
 
-                double dotProduct = getDotProduct(xVector, weights);
+                SimdMatrix w = weights; // One snapshot for both the prediction and the update
+                double dotProduct = getDotProduct(xVector, w);
                 int predicted = stepFunction(dotProduct);
 
                 // Standard update rule: w = w + learningRate * (y - predicted) * x
@@ -50,11 +113,19 @@ public class Perceptron {
                 // If y == 0 and predicted == 1, we need to subtract x from weights (multiplier = -1)
                 int error = y - predicted;
                 if (error != 0) {
-                    updateWeights(weights, xVector, error); // error is +1 or -1, so it will add or subtract x from weights
+                    if (updateWeights(w, xVector, error)) { // error is +1 or -1, so it will add or subtract x from weights
+                        updates++;
+                    }
                     converged = false; // If we had to update weights, we are not yet converged
-                    logger.debug("Epoch {}: Update triggered. Input: {}, Error: {}", epoch, xVector, error);
+                    // Trace level and guarded: formatting the input on every update is far more expensive than the update itself
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("Epoch {}: Update triggered. Input: {}, Error: {}", epoch, Arrays.toString(inputs[i]), error);
+                    }
                 }
             }
+            if (metrics) {
+                Metrics.epoch(epoch, System.nanoTime() - epochStart, inputs.length, updates, Metrics.threadAllocatedBytes() - allocatedStart);
+            }
             epoch++;
         }
         if (converged) {
@@ -66,15 +137,108 @@ public class Perceptron {
         return converged;
     }
 
+    /**
+     * Trains the perceptron on mini-batches prepared in the background by the given {@link DataLoader},
+     * so that shuffling and gathering the samples does not stall the training thread.
+     * The samples of each batch are still applied one by one with the standard perceptron update rule.
+     * @param loader The data loader providing the (shuffled) training samples.
+     * @param maxEpochs Maximum number of passes over the dataset.
+     * @return true if the perceptron converged (an epoch without any weight update), false otherwise.
+     */
+    public boolean train(DataLoader loader, int maxEpochs) {
+        if (loader.columns() != weights.columns()) {
+            throw new IllegalArgumentException("Input size does not match weight size.");
+        }
+        int epoch = 0;
+        boolean converged = false;
+        // Reused row vector the current sample is copied into, instead of wrapping a new SimdMatrix per sample
+        SimdMatrix xVector = new SimdMatrix(1, loader.columns());
+
+        logger.info("Starting training with learning rate: {}, max epochs: {}, batch size: {}", learningRate, maxEpochs, loader.batchSize());
+        try {
+            while (!converged && epoch < maxEpochs) {
+                converged = true;
+                boolean metrics = Metrics.enabled();
+                long epochStart = metrics ? System.nanoTime() : 0;
+                long allocatedStart = metrics ? Metrics.threadAllocatedBytes() : 0;
+                int samples = 0;
+                int updates = 0;
+                DataLoader.Batch batch;
+                while ((batch = loader.next()) != null) {
+                    for (int r = 0; r < batch.size(); r++) {
+                        batch.copyRow(r, xVector);
+                        SimdMatrix w = weights;
+                        int error = batch.labels[r] - stepFunction(getDotProduct(xVector, w));
+                        if (error != 0) {
+                            if (updateWeights(w, xVector, error)) {
+                                updates++;
+                            }
+                            converged = false;
+                        }
+                    }
+                    samples += batch.size();
+                }
+                if (metrics) {
+                    Metrics.epoch(epoch, System.nanoTime() - epochStart, samples, updates, Metrics.threadAllocatedBytes() - allocatedStart);
+                }
+                epoch++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Training interrupted after {} epochs.", epoch);
+            return false;
+        }
+        logger.info("Waited {} ms on data over {} batches ({} stalls).", loader.waitTimeNanos() / 1_000_000, loader.batchesServed(), loader.stallCount());
+        if (converged) {
+            logger.info("Training converged successfully after {} epochs.", epoch);
+        } else {
+            logger.warn("Training failed to converge after {} epochs.", maxEpochs);
+        }
+        return converged;
+    }
+
+    /**
+     * Predicts the output for a single input. Safe to call from any number of threads, also while the
+     * perceptron is being trained or its weights are being swapped: every call uses one consistent weight snapshot.
+     */
     public int predict(float[] input) {
-        if (input.length != weights.columns()) {
+        SimdMatrix w = weights; // Single volatile read, the snapshot cannot change under us
+        if (input.length != w.columns()) {
             throw new IllegalArgumentException("Input size does not match weight size.");
         }
         SimdMatrix inputVec = new SimdMatrix(1, input.length, input);
-        double dotProduct = getDotProduct(inputVec, weights);
+        double dotProduct = getDotProduct(inputVec, w);
         return stepFunction(dotProduct);
     }
 
+    /**
+     * Predicts a whole batch of inputs with a single matrix multiplication.
+     * The inputs are gathered transposed into a (features, batch) matrix so that the product
+     * weights (1, features) * X^T (features, batch) is vectorized across the batch dimension.
+     * @param inputs The input samples, each with the same size as the weights.
+     * @return The predicted output (0 or 1) of each sample.
+     */
+    public int[] predictBatch(float[][] inputs) {
+        SimdMatrix w = weights;
+        int columns = w.columns();
+        int n = inputs.length;
+        SimdMatrix xT = new SimdMatrix(columns, n);
+        for (int r = 0; r < n; r++) {
+            if (inputs[r].length != columns) {
+                throw new IllegalArgumentException("Input size does not match weight size.");
+            }
+            for (int c = 0; c < columns; c++) {
+                xT.data[c * n + r] = inputs[r][c];
+            }
+        }
+        SimdMatrix scores = w.matmul(xT);
+        int[] predictions = new int[n];
+        for (int r = 0; r < n; r++) {
+            predictions[r] = stepFunction(scores.data[r]);
+        }
+        return predictions;
+    }
+
     private int stepFunction(double dotProduct) {
         if (dotProduct >= 0) {
             return 1;
@@ -83,9 +247,18 @@ public class Perceptron {
         }
     }
 
-    private void updateWeights(SimdMatrix weights, SimdMatrix x, int multiplier) {
+    /**
+     * Publishes snapshot + learningRate * multiplier * x, unless the weights were replaced (swapped, loaded from a
+     * checkpoint, ...) since the snapshot was read. In that case the step is dropped rather than retried: the error was
+     * computed with the old weights, and the sample is visited again in the next epoch anyway.
+     * @return true if the update was published.
+     */
+    private boolean updateWeights(SimdMatrix snapshot, SimdMatrix x, int multiplier) {
         // multiplier is +1 if we need to add x to weights, -1 if we need to subtract x from weights
-        this.weights = weights.addRowVector(x.scale(learningRate * multiplier));
+        // The update goes into a fresh copy (the only allocation), so concurrent readers keep using the previous snapshot until it is published
+        SimdMatrix updated = snapshot.copy();
+        updated.addScaledInPlace(x, learningRate * multiplier);
+        return WEIGHTS.compareAndSet(this, snapshot, updated);
     }
 
     public float getDotProduct(SimdMatrix inputs, SimdMatrix weights) {
@@ -96,7 +269,87 @@ public class Perceptron {
     }
 
     public void initializeWeights() {
-        this.weights = SimdMatrix.random(1, inputs[0].length);
+        this.weights = SimdMatrix.random(1, inputs[0].length, random.nextLong());
         logger.debug("Weights initialized to: {}", weights);
     }
+
+    /**
+     * Saves the current weights to a checkpoint file in the background, so training does not pause while writing.
+     * @param path The checkpoint file to create or replace.
+     * @return A future completing once the checkpoint has been written.
+     */
+    public CompletableFuture<Void> saveCheckpoint(Path path) {
+        return Checkpoint.saveAsync(path, Map.of(WEIGHTS_TENSOR, weights));
+    }
+
+    /**
+     * Replaces the current weights with the ones stored in a checkpoint file.
+     * @param path The checkpoint file written by {@link #saveCheckpoint(Path)}.
+     * @throws IOException If the checkpoint cannot be read or does not match this perceptron's input size.
+     */
+    public void loadCheckpoint(Path path) throws IOException {
+        SimdMatrix loaded = readWeights(path);
+        if (loaded.columns() != weights.columns()) {
+            throw new IOException("Checkpoint weight size " + loaded.shape() + " does not match " + weights.shape());
+        }
+        swapWeights(loaded);
+    }
+
+    /**
+     * Atomically replaces the live weights, e.g. with a freshly trained or loaded model.
+     * Predictions already in flight finish with the old weights, all later ones see the new weights.
+     * @param newWeights The new weights, of shape (1, input size). They are copied, so the caller may reuse the matrix.
+     * @return The previous weights.
+     */
+    public SimdMatrix swapWeights(SimdMatrix newWeights) {
+        SimdMatrix current = weights;
+        if (newWeights.rows() != 1 || newWeights.columns() != current.columns()) {
+            throw new IllegalArgumentException("Shape mismatch: " + newWeights.shape() + " vs " + current.shape());
+        }
+        return (SimdMatrix) WEIGHTS.getAndSet(this, copyOf(newWeights));
+    }
+
+    /**
+     * Replaces the live weights only if they are still the {@code expected} snapshot,
+     * so that concurrent updaters (e.g. an online trainer and a model reloader) do not overwrite each other.
+     * @param expected The snapshot previously returned by {@link #weightsSnapshot()} or {@link #swapWeights(SimdMatrix)}.
+     * @param newWeights The new weights, of shape (1, input size). They are copied.
+     * @return true if the weights were replaced.
+     */
+    public boolean compareAndSwapWeights(SimdMatrix expected, SimdMatrix newWeights) {
+        if (newWeights.rows() != 1 || newWeights.columns() != expected.columns()) {
+            throw new IllegalArgumentException("Shape mismatch: " + newWeights.shape() + " vs " + expected.shape());
+        }
+        return WEIGHTS.compareAndSet(this, expected, copyOf(newWeights));
+    }
+
+    /**
+     * Returns the current weight snapshot. The returned matrix must be treated as read-only,
+     * since it may be in use by concurrent predictions.
+     */
+    public SimdMatrix weightsSnapshot() {
+        return weights;
+    }
+
+    private static SimdMatrix copyOf(SimdMatrix m) {
+        return new SimdMatrix(m.rows(), m.columns(), m.data.clone());
+    }
+
+    /**
+     * Restores a perceptron for inference from a checkpoint file, without any training data.
+     * @param path The checkpoint file written by {@link #saveCheckpoint(Path)}.
+     * @return A perceptron which can {@link #predict(float[])} but not be trained.
+     * @throws IOException If the checkpoint cannot be read.
+     */
+    public static Perceptron fromCheckpoint(Path path) throws IOException {
+        return new Perceptron(readWeights(path));
+    }
+
+    private static SimdMatrix readWeights(Path path) throws IOException {
+        SimdMatrix loaded = Checkpoint.load(path).get(WEIGHTS_TENSOR);
+        if (loaded == null || loaded.rows() != 1) {
+            throw new IOException("Checkpoint does not contain perceptron weights: " + path);
+        }
+        return loaded;
+    }
 }
@@ -0,0 +1,121 @@
+package serving;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import neuralnetworks.perceptron.Perceptron;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP inference server for a {@link Perceptron}.
+ * Every request is handled on its own virtual thread, which parks cheaply while its input waits in the
+ * {@link MicroBatcher} to be scored together with other concurrent requests.
+ * <p>
+ * Protocol: {@code POST /predict} with the input features as comma-separated numbers in the body.
+ * The response body is the predicted class ({@code 0} or {@code 1}); malformed input gets a {@code 400},
+ * requests arriving while the server shuts down a {@code 503}.
+ */
+public class InferenceServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(InferenceServer.class);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final MicroBatcher batcher;
+
+    /**
+     * Starts a server bound to the loopback interface.
+     * @param model The perceptron to serve.
+     * @param port The port to listen on, or 0 for any free port (see {@link #port()}).
+     * @param maxBatchSize Maximum number of requests scored in one micro-batch.
+     * @param maxLatency Maximum time a request waits for its micro-batch to fill up.
+     * @throws IOException If the server socket cannot be bound.
+     */
+    public InferenceServer(Perceptron model, int port, int maxBatchSize, Duration maxLatency) throws IOException {
+        this.batcher = new MicroBatcher(model::predictBatch, maxBatchSize, maxLatency);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/predict", this::handlePredict);
+        this.server.setExecutor(executor);
+        this.server.start();
+        logger.info("Inference server listening on port {} (max batch size: {}, max latency: {})", port(), maxBatchSize, maxLatency);
+    }
+
+    private void handlePredict(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "Only POST is supported");
+                return;
+            }
+            float[] input;
+            try {
+                input = parse(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                respond(exchange, 400, "Malformed input: " + e.getMessage());
+                return;
+            }
+            try {
+                int prediction = batcher.submit(input).get();
+                respond(exchange, 200, Integer.toString(prediction));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName();
+                // The batcher fails requests with an IllegalStateException once it is closed, anything else is a bad input
+                respond(exchange, cause instanceof IllegalStateException ? 503 : 400, message);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "Server shutting down");
+            }
+        }
+    }
+
+    // Parses "1.0,0.5,-2" into a float array
+    private static float[] parse(String body) {
+        String[] parts = body.trim().split(",");
+        float[] input = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            input[i] = Float.parseFloat(parts[i].trim());
+        }
+        return input;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @return The port the server is listening on.
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return The micro-batcher, e.g. to inspect how many requests were coalesced per batch.
+     */
+    public MicroBatcher batcher() {
+        return batcher;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        batcher.close();
+        executor.close();
+        logger.info("Inference server stopped after {} requests in {} batches", batcher.sampleCount(), batcher.batchCount());
+    }
+}
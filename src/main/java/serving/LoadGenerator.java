@@ -0,0 +1,128 @@
+package serving;
+
+import neuralnetworks.perceptron.Perceptron;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop load generator for the {@link InferenceServer}.
+ * Each of the {@code concurrency} virtual-thread clients sends a request, waits for the answer and immediately
+ * sends the next one, so the measured latency includes the time spent waiting for a micro-batch to fill up.
+ * <p>
+ * Run {@code main} to start a server with a randomly initialized perceptron on localhost and print p50/p99 latency and QPS.
+ */
+public class LoadGenerator {
+    /**
+     * Result of a load test run.
+     * @param requests Number of successful requests.
+     * @param errors Number of failed requests.
+     * @param seconds Wall-clock duration of the run.
+     * @param p50Micros Median latency in microseconds.
+     * @param p99Micros 99th percentile latency in microseconds.
+     */
+    public record Report(int requests, int errors, double seconds, double p50Micros, double p99Micros) {
+        public double qps() {
+            return requests / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests: %d, errors: %d, QPS: %.0f, p50: %.1f us, p99: %.1f us", requests, errors, qps(), p50Micros, p99Micros);
+        }
+    }
+
+    /**
+     * Sends {@code requestsPerClient} requests from each of {@code concurrency} concurrent clients.
+     * @param uri The predict endpoint, e.g. {@code http://127.0.0.1:8080/predict}.
+     * @param concurrency Number of concurrent clients.
+     * @param requestsPerClient Number of requests each client sends.
+     * @param features Number of input features per request.
+     * @param seed Seed for the random request inputs.
+     * @return The latency and throughput report.
+     */
+    public static Report run(URI uri, int concurrency, int requestsPerClient, int features, long seed) throws InterruptedException {
+        long[] latencies = new long[concurrency * requestsPerClient];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        SplittableRandom root = new SplittableRandom(seed);
+
+        long start = System.nanoTime();
+        try (HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                SplittableRandom random = root.split();
+                clients.submit(() -> {
+                    for (int r = 0; r < requestsPerClient; r++) {
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .POST(HttpRequest.BodyPublishers.ofString(randomInput(random, features)))
+                                .build();
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                            if (response.statusCode() == 200) {
+                                latencies[completed.getAndIncrement()] = System.nanoTime() - sent;
+                            } else {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int n = completed.get();
+        long[] sorted = Arrays.copyOf(latencies, n);
+        Arrays.sort(sorted);
+        return new Report(n, errors.get(), seconds, percentile(sorted, 0.50) / 1e3, percentile(sorted, 0.99) / 1e3);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return Double.NaN;
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+    }
+
+    // Bias input followed by random features, e.g. "1,0.42,-1.3"
+    private static String randomInput(SplittableRandom random, int features) {
+        StringBuilder sb = new StringBuilder("1");
+        for (int i = 1; i < features; i++) {
+            sb.append(',').append((float) random.nextDouble(-1, 1));
+        }
+        return sb.toString();
+    }
+
+    static void main(String[] args) throws Exception {
+        int features = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int requestsPerClient = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        // Any weights will do for measuring latency, so the random initial weights are served untrained
+        float[][] inputs = new float[1][features];
+        Perceptron model = new Perceptron(inputs, new int[]{0}, 0.1f);
+
+        for (int maxBatch : new int[]{1, 16, 64, 256}) {
+            try (InferenceServer server = new InferenceServer(model, 0, maxBatch, Duration.ofMillis(2))) {
+                URI uri = URI.create("http://127.0.0.1:" + server.port() + "/predict");
+                run(uri, concurrency, requestsPerClient / 10, features, 1L); // Warm-up
+                Report report = run(uri, concurrency, requestsPerClient, features, 42L);
+                double avgBatch = (double) server.batcher().sampleCount() / server.batcher().batchCount();
+                System.out.printf("max batch %4d | avg batch %6.1f | %s%n", maxBatch, avgBatch, report);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package serving;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent single-sample prediction requests into micro-batches.
+ * A dispatcher thread waits for the first pending request, then keeps collecting requests until either
+ * {@code maxBatchSize} requests are queued or {@code maxLatency} has passed since the first one arrived.
+ * The whole batch is then scored with one call of the batch scorer (e.g. {@code Perceptron::predictBatch}),
+ * so that many small dot products become one vectorized matrix multiplication.
+ */
+public class MicroBatcher implements AutoCloseable {
+    private final Function<float[][], int[]> scorer;
+    private final int maxBatchSize;
+    private final long maxLatencyNanos;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+
+    private record Request(float[] input, long arrivalNanos, CompletableFuture<Integer> result) {
+    }
+
+    /**
+     * @param scorer Function scoring a batch of inputs, returning one prediction per input.
+     * @param maxBatchSize Maximum number of requests scored together.
+     * @param maxLatency Maximum time the first request of a batch waits for more requests to arrive.
+     */
+    public MicroBatcher(Function<float[][], int[]> scorer, int maxBatchSize, Duration maxLatency) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be at least 1.");
+        }
+        this.scorer = scorer;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = maxLatency.toNanos();
+        this.dispatcher = Thread.ofPlatform().name("micro-batcher").daemon().start(this::dispatch);
+    }
+
+    /**
+     * Queues a single input for prediction.
+     * @param input The input sample.
+     * @return A future completed with the prediction once the micro-batch containing this input has been scored.
+     */
+    public CompletableFuture<Integer> submit(float[] input) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        Request request = new Request(input, System.nanoTime(), result);
+        queue.add(request);
+        // close() sets the flag before the dispatcher's final drain, so a request queued after that drain sees it here.
+        // Whoever removes the request from the queue (this thread or the drain) fails it.
+        if (closed && queue.remove(request)) {
+            result.completeExceptionally(new IllegalStateException("Micro-batcher is closed."));
+        }
+        return result;
+    }
+
+    private void dispatch() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // Block until the first request of the next batch arrives
+                Request first = queue.take();
+                batch.add(first);
+                long deadline = first.arrivalNanos + maxLatencyNanos;
+
+                // Fill the batch until it is full or the oldest request has waited long enough
+                while (batch.size() < maxBatchSize) {
+                    // Take whatever is already queued without waiting
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) break;
+                    Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                score(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // close() was called
+            Thread.currentThread().interrupt();
+        }
+        // Fail everything that will never be scored
+        queue.drainTo(batch);
+        for (Request request : batch) {
+            request.result.completeExceptionally(new IllegalStateException("Micro-batcher is closed."));
+        }
+    }
+
+    private void score(List<Request> batch) {
+        float[][] inputs = new float[batch.size()][];
+        for (int i = 0; i < inputs.length; i++) inputs[i] = batch.get(i).input;
+        // Count before completing the futures, so a caller woken up by its result already sees its batch counted
+        batches.incrementAndGet();
+        samples.addAndGet(inputs.length);
+        try {
+            int[] predictions = scorer.apply(inputs);
+            for (int i = 0; i < inputs.length; i++) {
+                batch.get(i).result.complete(predictions[i]);
+            }
+        } catch (RuntimeException e) {
+            // One bad input (e.g. wrong size) fails the whole batch, so fall back to scoring the requests one by one
+            for (Request request : batch) {
+                try {
+                    request.result.complete(scorer.apply(new float[][]{request.input})[0]);
+                } catch (RuntimeException single) {
+                    request.result.completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Number of micro-batches scored so far.
+     */
+    public long batchCount() {
+        return batches.get();
+    }
+
+    /**
+     * @return Number of requests scored so far.
+     */
+    public long sampleCount() {
+        return samples.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Micro-benchmarks candidate {@link KernelConfig}s for representative matrix shapes and picks the fastest one per
+ * {@link KernelProfile.ShapeClass}. The result is saved as a profile file which later processes load at startup,
+ * so tuning is paid once per machine type instead of on every run.
+ * <p>
+ * Instead of trying the full cartesian product of all parameters, the search is a coordinate descent: starting from
+ * the default, each parameter (parallelism, tile sizes, unroll) is tuned in turn while the others stay fixed.
+ * <p>
+ * Run from the command line with an optional output path (defaults to {@link KernelProfile#DEFAULT_PATH}):
+ * <pre>java --add-modules jdk.incubator.vector -cp ... utils.Autotuner [profile.properties]</pre>
+ * or start any program with {@code -Ddljava.autotune=true} to tune on first use when no profile exists for this machine.
+ */
+public class Autotuner {
+    private static final Logger logger = LoggerFactory.getLogger(Autotuner.class);
+
+    private final int warmup;
+    private final int iterations;
+
+    /**
+     * @param warmup Number of untimed runs per candidate, to let the JIT compile the kernel.
+     * @param iterations Number of timed runs per candidate; the fastest one counts.
+     */
+    public Autotuner(int warmup, int iterations) {
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    /**
+     * @return The representative (m, n, p) shape benchmarked for each shape class.
+     */
+    public static Map<KernelProfile.ShapeClass, int[]> representativeShapes() {
+        Map<KernelProfile.ShapeClass, int[]> shapes = new EnumMap<>(KernelProfile.ShapeClass.class);
+        shapes.put(KernelProfile.ShapeClass.VECTOR, new int[]{1, 1024, 1024});
+        shapes.put(KernelProfile.ShapeClass.SMALL, new int[]{48, 48, 48});
+        shapes.put(KernelProfile.ShapeClass.MEDIUM, new int[]{256, 256, 256});
+        shapes.put(KernelProfile.ShapeClass.LARGE, new int[]{768, 768, 768});
+        return shapes;
+    }
+
+    /**
+     * Tunes every shape class with its representative shape, and the {@link Strassen} cutoff.
+     */
+    public KernelProfile tuneAll() {
+        return tuneAll(representativeShapes(), 1024);
+    }
+
+    /**
+     * Tunes the given shape classes, then the {@link Strassen} cutoff for square products of the given size using the
+     * configurations just tuned.
+     */
+    KernelProfile tuneAll(Map<KernelProfile.ShapeClass, int[]> shapes, int strassenSize) {
+        KernelProfile profile = tune(shapes);
+        int strassenCutoff = tuneStrassenCutoff(strassenSize, profile);
+        logger.info("Tuned Strassen cutoff: {}", strassenCutoff == Integer.MAX_VALUE ? "never faster" : strassenCutoff);
+        return new KernelProfile(profile.configs(), strassenCutoff);
+    }
+
+    /**
+     * Tunes the given shape classes.
+     * @param shapes The (m, n, p) shape to benchmark for each shape class.
+     * @return A profile with the fastest configuration found for each class.
+     */
+    public KernelProfile tune(Map<KernelProfile.ShapeClass, int[]> shapes) {
+        Map<KernelProfile.ShapeClass, KernelConfig> configs = new EnumMap<>(KernelProfile.ShapeClass.class);
+        shapes.forEach((shape, mnp) -> {
+            KernelConfig best = tune(mnp[0], mnp[1], mnp[2]);
+            logger.info("Tuned {} ({} x {} x {}): {}", shape, mnp[0], mnp[1], mnp[2], best);
+            configs.put(shape, best);
+        });
+        return new KernelProfile(configs);
+    }
+
+    /**
+     * Finds the fastest configuration for an (m x n) * (n x p) product.
+     */
+    public KernelConfig tune(int m, int n, int p) {
+        SimdMatrix a = SimdMatrix.random(m, n);
+        SimdMatrix b = SimdMatrix.random(n, p);
+
+        KernelConfig best = KernelConfig.DEFAULT;
+        long bestNanos = measure(a, b, best);
+
+        // One parameter at a time, keeping the best value found so far for the others
+        List<Function<KernelConfig, List<KernelConfig>>> dimensions = List.of(
+                c -> List.of(new KernelConfig(c.tileK(), c.tileJ(), c.unroll(), 0),
+                        new KernelConfig(c.tileK(), c.tileJ(), c.unroll(), Long.MAX_VALUE)),
+                c -> List.of(64, 128, 256, 512).stream().map(k -> new KernelConfig(k, c.tileJ(), c.unroll(), c.parallelThreshold())).toList(),
+                c -> List.of(128, 256, 512, 1024, 4096).stream().map(j -> new KernelConfig(c.tileK(), j, c.unroll(), c.parallelThreshold())).toList(),
+                c -> List.of(1, 2, 4).stream().map(u -> new KernelConfig(c.tileK(), c.tileJ(), u, c.parallelThreshold())).toList()
+        );
+        for (var dimension : dimensions) {
+            for (KernelConfig candidate : dimension.apply(best)) {
+                if (candidate.equals(best)) continue;
+                long nanos = measure(a, b, candidate);
+                if (nanos < bestNanos) {
+                    bestNanos = nanos;
+                    best = candidate;
+                }
+            }
+        }
+        // Parallel won at the benchmarked shape: go parallel for products at least that large (or from the default
+        // threshold, if that is lower), but keep smaller products of the class sequential, since they were not measured
+        if (best.parallelThreshold() == 0) {
+            best = new KernelConfig(best.tileK(), best.tileJ(), best.unroll(), Math.min((long) m * n * p, KernelConfig.DEFAULT.parallelThreshold()));
+        }
+        return best;
+    }
+
+    /**
+     * Finds the {@link Strassen} cutoff for square products of the given size: the block size below which the classical
+     * kernel is faster than another level of recursion.
+     * @param size Size of the square product to benchmark.
+     * @return The fastest cutoff, or {@link Integer#MAX_VALUE} if the classical kernel is faster than any Strassen level.
+     */
+    public int tuneStrassenCutoff(int size) {
+        return tuneStrassenCutoff(size, new KernelProfile(Map.of()));
+    }
+
+    /**
+     * Same as {@link #tuneStrassenCutoff(int)}, with the classical products configured by the given profile.
+     * The active profile is never read, so this also works while the startup profile is being tuned.
+     */
+    public int tuneStrassenCutoff(int size, KernelProfile profile) {
+        SimdMatrix a = SimdMatrix.random(size, size);
+        SimdMatrix b = SimdMatrix.random(size, size);
+
+        int best = Integer.MAX_VALUE;
+        long bestNanos = measure(a, b, profile.configFor(size, size, size));
+        for (int cutoff = size / 2; cutoff >= 64; cutoff /= 2) {
+            int c = cutoff;
+            int leaf = size >> Strassen.depth(size, size, size, cutoff);
+            KernelConfig config = profile.configFor(leaf, leaf, leaf);
+            long nanos = measure(() -> Strassen.multiply(a, b, c, config));
+            if (nanos < bestNanos) {
+                bestNanos = nanos;
+                best = cutoff;
+            }
+        }
+        return best;
+    }
+
+    private long measure(SimdMatrix a, SimdMatrix b, KernelConfig config) {
+        return measure(() -> a.matmul(b, config));
+    }
+
+    private long measure(Runnable kernel) {
+        for (int i = 0; i < warmup; i++) kernel.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            kernel.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    /**
+     * Tunes all shape classes and saves the profile. Use {@link KernelProfile#activate(KernelProfile)} to use it in this process.
+     * @param path Where to save the profile.
+     * @return The new profile.
+     */
+    public static KernelProfile tuneAndSave(Path path) throws IOException {
+        logger.info("Autotuning SimdMatrix kernels for {}...", KernelProfile.machineFingerprint());
+        KernelProfile profile = new Autotuner(3, 5).tuneAll();
+        profile.save(path);
+        logger.info("Saved kernel profile to {}", path);
+        return profile;
+    }
+
+    static void main(String[] args) throws IOException {
+        Path path = args.length > 0 ? Path.of(args[0]) : KernelProfile.DEFAULT_PATH;
+        KernelProfile profile = tuneAndSave(path);
+        profile.configs().forEach((shape, config) -> System.out.printf("%-6s %s%n", shape, config));
+    }
+}
@@ -0,0 +1,260 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32C;
+
+/**
+ * Versioned, checksummed binary checkpoint format for named {@link SimdMatrix} tensors.
+ * <p>
+ * Layout (all values little-endian):
+ * <pre>
+ * Header block (padded to BLOCK_SIZE):
+ *   int   magic ("DLJC")
+ *   int   format version
+ *   int   tensor count
+ *   per tensor: short nameLength, byte[] name (UTF-8), int rows, int cols, long dataOffset, int dataCrc32c
+ *   int   header CRC32C (over everything above)
+ * Data blocks:
+ *   raw float32 values of each tensor, each starting at a BLOCK_SIZE aligned offset
+ * </pre>
+ * Aligning every tensor to a page boundary lets the file be written in large aligned blocks and lets the
+ * loader map it into memory and read each tensor with a single bulk copy.
+ */
+public final class Checkpoint {
+    public static final int MAGIC = 0x434A4C44; // "DLJC" when read as little-endian bytes
+    public static final int VERSION = 1;
+    static final int BLOCK_SIZE = 4096;
+
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final int WRITE_CHUNK = 1 << 20; // 1 MiB staging buffer for the data blocks
+
+    private Checkpoint() {
+    }
+
+    /**
+     * Writes the given tensors to a checkpoint file.
+     * The file is first written to a unique temporary sibling and then atomically moved into place,
+     * so a crash during saving never leaves a truncated checkpoint behind.
+     * @param path The checkpoint file to create or replace.
+     * @param tensors The tensors to save, by name. Iteration order is preserved in the file.
+     * @throws IOException If writing the file fails.
+     */
+    public static void save(Path path, Map<String, SimdMatrix> tensors) throws IOException {
+        List<Entry> entries = new ArrayList<>(tensors.size());
+        long offset = align(headerSize(tensors));
+        for (var tensor : tensors.entrySet()) {
+            SimdMatrix m = tensor.getValue();
+            entries.add(new Entry(tensor.getKey(), m, offset, crc(m)));
+            offset = align(offset + (long) m.rows * m.cols * Float.BYTES);
+        }
+
+        // A unique temporary file per save, so that concurrent saves to the same path do not write into each other
+        Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                writeFully(channel, encodeHeader(entries), 0);
+
+                ByteBuffer chunk = ByteBuffer.allocateDirect(WRITE_CHUNK).order(ORDER);
+                for (Entry entry : entries) {
+                    float[] data = entry.matrix.data;
+                    int len = entry.matrix.rows * entry.matrix.cols;
+                    long position = entry.offset;
+                    // Stream the floats through the direct staging buffer in large blocks
+                    for (int i = 0; i < len; ) {
+                        int n = Math.min(len - i, WRITE_CHUNK / Float.BYTES);
+                        chunk.clear();
+                        chunk.asFloatBuffer().put(data, i, n);
+                        chunk.limit(n * Float.BYTES);
+                        position += writeFully(channel, chunk, position);
+                        i += n;
+                    }
+                }
+                // Pad the file to a whole number of blocks so the last tensor is also block aligned
+                if (channel.size() < offset) {
+                    writeFully(channel, ByteBuffer.allocate(1), offset - 1);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            // Do not leave the partial file behind when writing or moving it fails
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Saves the given tensors on a background virtual thread.
+     * The tensor data is copied before this method returns, so the caller may keep modifying the matrices
+     * (e.g. continue training) while the checkpoint is being written.
+     * @param path The checkpoint file to create or replace.
+     * @param tensors The tensors to save, by name.
+     * @return A future completing once the checkpoint is durably on disk, or exceptionally with the {@link IOException}.
+     */
+    public static CompletableFuture<Void> saveAsync(Path path, Map<String, SimdMatrix> tensors) {
+        Map<String, SimdMatrix> snapshot = new LinkedHashMap<>();
+        for (var tensor : tensors.entrySet()) {
+            SimdMatrix m = tensor.getValue();
+            snapshot.put(tensor.getKey(), new SimdMatrix(m.rows, m.cols, Arrays.copyOf(m.data, m.rows * m.cols)));
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Thread.ofVirtual().name("checkpoint-writer").start(() -> {
+            try {
+                save(path, snapshot);
+                future.complete(null);
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Loads all tensors of a checkpoint file.
+     * The file is memory-mapped and each tensor is verified against its checksum directly on the mapping,
+     * then read into its matrix with one bulk copy (no intermediate buffers).
+     * @param path The checkpoint file.
+     * @return The tensors by name, in the order they were saved.
+     * @throws IOException If the file cannot be read, is not a checkpoint, has an unsupported version or is corrupted.
+     */
+    public static Map<String, SimdMatrix> load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < BLOCK_SIZE) {
+                throw new IOException("Not a checkpoint file: " + path);
+            }
+            // The header always fits in the blocks before the first tensor
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+            header.order(ORDER);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a checkpoint file: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + " (expected " + VERSION + ")");
+            }
+
+            List<Entry> entries = new ArrayList<>();
+            try {
+                int count = header.getInt();
+                for (int t = 0; t < count; t++) {
+                    byte[] name = new byte[header.getShort()];
+                    header.get(name);
+                    int rows = header.getInt();
+                    int cols = header.getInt();
+                    long offset = header.getLong();
+                    int crc = header.getInt();
+                    if (rows < 0 || cols < 0 || offset < 0 || offset + (long) rows * cols * Float.BYTES > size) {
+                        throw new IOException("Corrupted checkpoint header: tensor " + t + " out of bounds");
+                    }
+                    entries.add(new Entry(new String(name, StandardCharsets.UTF_8), new SimdMatrix(rows, cols), offset, crc));
+                }
+                CRC32C headerCrc = new CRC32C();
+                headerCrc.update(header.slice(0, header.position()));
+                if ((int) headerCrc.getValue() != header.getInt()) {
+                    throw new IOException("Checkpoint header checksum mismatch: " + path);
+                }
+            } catch (BufferUnderflowException | NegativeArraySizeException e) {
+                throw new IOException("Corrupted checkpoint header: " + path, e);
+            }
+
+            Map<String, SimdMatrix> tensors = new LinkedHashMap<>();
+            for (Entry entry : entries) {
+                SimdMatrix m = entry.matrix;
+                int len = m.rows * m.cols;
+                // Map only this tensor's blocks: verify the checksum on the mapping, then bulk copy into the matrix
+                MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, entry.offset, (long) len * Float.BYTES);
+                CRC32C crc = new CRC32C();
+                crc.update(data.duplicate());
+                if ((int) crc.getValue() != entry.crc) {
+                    throw new IOException("Checksum mismatch for tensor '" + entry.name + "' in " + path);
+                }
+                data.order(ORDER).asFloatBuffer().get(m.data, 0, len);
+                tensors.put(entry.name, m);
+            }
+            return tensors;
+        }
+    }
+
+    private record Entry(String name, SimdMatrix matrix, long offset, int crc) {
+    }
+
+    private static ByteBuffer encodeHeader(List<Entry> entries) {
+        int size = 12 + Integer.BYTES;
+        for (Entry e : entries) size += entrySize(e.name);
+        ByteBuffer header = ByteBuffer.allocateDirect(size).order(ORDER);
+        header.putInt(MAGIC).putInt(VERSION).putInt(entries.size());
+        for (Entry e : entries) {
+            byte[] name = e.name.getBytes(StandardCharsets.UTF_8);
+            header.putShort((short) name.length).put(name)
+                    .putInt(e.matrix.rows).putInt(e.matrix.cols)
+                    .putLong(e.offset).putInt(e.crc);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(header.duplicate().flip());
+        header.putInt((int) crc.getValue());
+        return header.flip();
+    }
+
+    private static int headerSize(Map<String, SimdMatrix> tensors) {
+        int size = 12 + Integer.BYTES;
+        for (String name : tensors.keySet()) {
+            if (name.getBytes(StandardCharsets.UTF_8).length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Tensor name too long: " + name);
+            }
+            size += entrySize(name);
+        }
+        return size;
+    }
+
+    private static int entrySize(String name) {
+        return Short.BYTES + name.getBytes(StandardCharsets.UTF_8).length + 2 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+    }
+
+    // CRC32C of the little-endian float32 representation of the matrix (as it will be stored on disk)
+    private static int crc(SimdMatrix m) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK).order(ORDER);
+        int len = m.rows * m.cols;
+        for (int i = 0; i < len; ) {
+            int n = Math.min(len - i, WRITE_CHUNK / Float.BYTES);
+            chunk.clear();
+            chunk.asFloatBuffer().put(m.data, i, n);
+            crc.update(chunk.array(), 0, n * Float.BYTES);
+            i += n;
+        }
+        return (int) crc.getValue();
+    }
+
+    private static long align(long offset) {
+        return (offset + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,235 @@
+package utils;
+
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mini-batch data loader with asynchronous prefetching.
+ * A background thread shuffles the sample indices every epoch, gathers the rows of each mini-batch into a
+ * reusable {@link SimdMatrix} buffer and hands it over to the training thread through a blocking queue.
+ * With a prefetch depth of 1 this is classic double buffering: one batch is being trained on while the next one is being prepared.
+ * <p>
+ * The buffers form a ring of {@code prefetchDepth + 1} batches which are recycled, so no allocation happens after construction.
+ * A batch returned by {@link #next()} stays valid only until the following call to {@link #next()}.
+ */
+public class DataLoader implements AutoCloseable {
+    private final float[][] features;
+    private final int[] labels;
+    private final int batchSize;
+    private final int columns;
+    private final Random random; // Only touched by the producer thread, so the shuffle order depends only on the seed
+
+    private final BlockingQueue<Batch> free; // Buffers ready to be filled by the producer
+    private final BlockingQueue<Batch> ready; // Filled buffers (or the end-of-epoch marker) waiting for the trainer
+    private final Thread producer;
+    private Batch current; // Batch currently handed out to the trainer, recycled on the next call
+    private volatile RuntimeException failure; // Set by the producer before it puts FAILED into the ready queue
+
+    // Metrics (written by the trainer thread, read from anywhere)
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong stalls = new AtomicLong();
+    private final AtomicLong batchesServed = new AtomicLong();
+
+    // Marker put into the ready queue after the last batch of an epoch
+    private static final Batch END_OF_EPOCH = new Batch(new SimdMatrix(0, 0), new int[0]);
+    // Marker put into the ready queue when the producer failed; stays in the queue so that every later call fails too
+    private static final Batch FAILED = new Batch(new SimdMatrix(0, 0), new int[0]);
+
+    /**
+     * Mini-batch of samples.
+     * {@code features} has shape (batchSize, columns) and {@code labels} has batchSize entries,
+     * but only the first {@code size} rows are valid (the last batch of an epoch may be smaller).
+     */
+    public static final class Batch {
+        public final SimdMatrix features;
+        public final int[] labels;
+        private int size;
+
+        private Batch(SimdMatrix features, int[] labels) {
+            this.features = features;
+            this.labels = labels;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Copies the given row of this batch into {@code destination}, which must have shape (1, columns).
+         * @param row The row index within the batch (0 to size-1).
+         * @param destination The row vector to copy into.
+         */
+        public void copyRow(int row, SimdMatrix destination) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + " out of bounds for batch of size " + size);
+            }
+            System.arraycopy(features.data, row * features.cols, destination.data, 0, features.cols);
+        }
+    }
+
+    /**
+     * Creates a data loader which prepares batches on a virtual thread.
+     * @param features The input samples, one row per sample. All rows must have the same length.
+     * @param labels The label of each sample.
+     * @param batchSize Number of samples per mini-batch.
+     * @param prefetchDepth Number of batches prepared ahead of the trainer (1 = double buffering).
+     * @param seed Seed for the per-epoch shuffle, so the batch order is reproducible.
+     */
+    public DataLoader(float[][] features, int[] labels, int batchSize, int prefetchDepth, long seed) {
+        this(features, labels, batchSize, prefetchDepth, seed, Thread.ofVirtual().name("data-loader-", 0).factory());
+    }
+
+    /**
+     * Creates a data loader which prepares batches on a thread created by the given factory
+     * (e.g. {@code Thread.ofPlatform().daemon().factory()} to pin the loader on a platform thread).
+     */
+    public DataLoader(float[][] features, int[] labels, int batchSize, int prefetchDepth, long seed, ThreadFactory threadFactory) {
+        if (features.length != labels.length) {
+            throw new IllegalArgumentException("Number of input samples must match number of output samples.");
+        }
+        if (features.length == 0) {
+            throw new IllegalArgumentException("Dataset must contain at least one sample.");
+        }
+        if (batchSize < 1 || prefetchDepth < 1) {
+            throw new IllegalArgumentException("Batch size and prefetch depth must be at least 1.");
+        }
+        for (int i = 1; i < features.length; i++) {
+            if (features[i].length != features[0].length) {
+                throw new IllegalArgumentException("Sample " + i + " has " + features[i].length + " features, expected " + features[0].length + ".");
+            }
+        }
+        this.features = features;
+        this.labels = labels;
+        this.batchSize = Math.min(batchSize, features.length);
+        this.columns = features[0].length;
+        this.random = new Random(seed);
+
+        // One extra buffer for the batch that is being trained on while the others are prefetched
+        int buffers = prefetchDepth + 1;
+        this.free = new ArrayBlockingQueue<>(buffers);
+        this.ready = new ArrayBlockingQueue<>(buffers + 1); // + 1 for the end-of-epoch marker
+        for (int i = 0; i < buffers; i++) {
+            free.add(new Batch(new SimdMatrix(this.batchSize, columns), new int[this.batchSize]));
+        }
+
+        this.producer = threadFactory.newThread(this::produce);
+        this.producer.start();
+    }
+
+    /**
+     * Returns the next mini-batch of the current epoch, blocking until it has been prepared.
+     * The previously returned batch is recycled and must not be used anymore.
+     * @return The next batch, or {@code null} once every sample of the epoch has been returned. The following call starts the next epoch.
+     * @throws InterruptedException If interrupted while waiting for the producer.
+     * @throws IllegalStateException If the producer failed to prepare a batch, with the producer's exception as the cause.
+     */
+    public Batch next() throws InterruptedException {
+        if (current != null) {
+            free.put(current);
+            current = null;
+        }
+        Batch batch = ready.poll();
+        if (batch == null) {
+            // The producer did not keep up: the trainer is stalled on data
+            long start = System.nanoTime();
+            batch = ready.take();
+            waitNanos.addAndGet(System.nanoTime() - start);
+            stalls.incrementAndGet();
+        }
+        if (batch == END_OF_EPOCH) {
+            return null;
+        }
+        if (batch == FAILED) {
+            ready.offer(FAILED);
+            throw new IllegalStateException("Data loader failed to prepare a batch.", failure);
+        }
+        batchesServed.incrementAndGet();
+        current = batch;
+        return batch;
+    }
+
+    private void produce() {
+        int n = features.length;
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) indices[i] = i;
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                shuffle(indices);
+                for (int start = 0; start < n; start += batchSize) {
+                    Batch batch = free.take();
+                    int size = Math.min(batchSize, n - start);
+                    // Gather the shuffled rows into the contiguous batch buffer
+                    for (int r = 0; r < size; r++) {
+                        int sample = indices[start + r];
+                        System.arraycopy(features[sample], 0, batch.features.data, r * columns, columns);
+                        batch.labels[r] = labels[sample];
+                    }
+                    batch.size = size;
+                    ready.put(batch);
+                }
+                ready.put(END_OF_EPOCH);
+            }
+        } catch (InterruptedException e) {
+            // close() was called, exit quietly
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Hand the failure to the trainer instead of leaving it blocked in next() forever.
+            // The queue has room: the producer still holds the batch it was filling.
+            failure = e;
+            ready.offer(FAILED);
+        }
+    }
+
+    // Fisher-Yates shuffle driven by the seeded generator
+    private void shuffle(int[] indices) {
+        for (int i = indices.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = indices[i];
+            indices[i] = indices[j];
+            indices[j] = tmp;
+        }
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * @return Total time in nanoseconds the trainer spent blocked in {@link #next()} waiting for a batch.
+     */
+    public long waitTimeNanos() {
+        return waitNanos.get();
+    }
+
+    /**
+     * @return Number of calls to {@link #next()} which had to wait because no batch was ready.
+     */
+    public long stallCount() {
+        return stalls.get();
+    }
+
+    /**
+     * @return Number of batches handed out to the trainer so far.
+     */
+    public long batchesServed() {
+        return batchesServed.get();
+    }
+
+    @Override
+    public void close() {
+        producer.interrupt();
+        try {
+            producer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package utils;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.random.RandomGeneratorFactory;
+import java.util.stream.IntStream;
+
+/**
+ * Seeded, parallel random initialization of weights.
+ * <p>
+ * The buffer is cut into chunks of a fixed size, and chunk {@code c} is filled by the {@code c}-th generator split off
+ * a {@code L64X128MixRandom} seeded with the given seed. The split happens on the calling thread in chunk order, so every
+ * chunk sees the same stream no matter which worker fills it: the result depends only on the seed and the length,
+ * never on the number of threads. The random numbers themselves are drawn one by one ({@code nextGaussian} is the JDK's
+ * ziggurat sampler), and the affine map to the requested range is vectorized.
+ * <p>
+ * Weight matrices are (fanOut x fanIn), as in {@code Conv2D} and {@code Perceptron}, so {@link #xavier} and {@link #he}
+ * take the fan-in from the columns and the fan-out from the rows.
+ */
+public final class Initializers {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final String ALGORITHM = "L64X128MixRandom";
+    static final int CHUNK = 1 << 14; // Part of the output format: changing it changes the values for a given seed
+
+    private Initializers() {
+    }
+
+    /**
+     * @return A seed for callers that do not need reproducible values.
+     */
+    public static long randomSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Fills the matrix with values drawn uniformly from [low, high).
+     */
+    public static SimdMatrix uniform(SimdMatrix m, float low, float high, long seed) {
+        uniform(m.data, low, high, seed);
+        return m;
+    }
+
+    /**
+     * Fills the matrix with normally distributed values.
+     */
+    public static SimdMatrix normal(SimdMatrix m, float mean, float std, long seed) {
+        normal(m.data, mean, std, seed);
+        return m;
+    }
+
+    /**
+     * Xavier/Glorot uniform initialization: U(-a, a) with a = sqrt(6 / (fanIn + fanOut)), for tanh and sigmoid layers.
+     */
+    public static SimdMatrix xavier(SimdMatrix m, long seed) {
+        float limit = (float) Math.sqrt(6.0 / (m.cols + m.rows));
+        return uniform(m, -limit, limit, seed);
+    }
+
+    /**
+     * He/Kaiming normal initialization: N(0, 2 / fanIn), for ReLU layers.
+     */
+    public static SimdMatrix he(SimdMatrix m, long seed) {
+        return normal(m, 0.0f, (float) Math.sqrt(2.0 / m.cols), seed);
+    }
+
+    /**
+     * Fills the array with values drawn uniformly from [low, high).
+     */
+    public static void uniform(float[] data, float low, float high, long seed) {
+        if (!(low < high)) throw new IllegalArgumentException("Invalid uniform range: [" + low + ", " + high + ")");
+        // low + u * (high - low) can round up to high, e.g. for u = 1 - 2^-24, so the results are clamped below it
+        fill(data, seed, false, high - low, low, Math.nextDown(high));
+    }
+
+    /**
+     * Fills the array with normally distributed values.
+     */
+    public static void normal(float[] data, float mean, float std, long seed) {
+        fill(data, seed, true, std, mean, Float.POSITIVE_INFINITY);
+    }
+
+    private static void fill(float[] data, long seed, boolean gaussian, float scale, float shift, float max) {
+        int chunks = (data.length + CHUNK - 1) / CHUNK;
+        SplittableGenerator root = RandomGeneratorFactory.<SplittableGenerator>of(ALGORITHM).create(seed);
+        SplittableGenerator[] generators = new SplittableGenerator[chunks];
+        for (int c = 0; c < chunks; c++) generators[c] = root.split();
+
+        IntStream stream = IntStream.range(0, chunks);
+        if (chunks > 1) stream = stream.parallel();
+        stream.forEach(c -> {
+            int from = c * CHUNK;
+            int to = Math.min(data.length, from + CHUNK);
+            SplittableGenerator random = generators[c];
+            if (gaussian) {
+                for (int i = from; i < to; i++) data[i] = (float) random.nextGaussian();
+            } else {
+                for (int i = from; i < to; i++) data[i] = random.nextFloat();
+            }
+            affine(data, from, to, scale, shift, max);
+        });
+    }
+
+    // data[i] = min(data[i] * scale + shift, max)
+    private static void affine(float[] data, int from, int to, float scale, float shift, float max) {
+        int i = from;
+        int loopBound = from + SPECIES.loopBound(to - from);
+        for (; i < loopBound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, data, i).mul(scale).add(shift).min(max).intoArray(data, i);
+        }
+        for (; i < to; i++) data[i] = Math.min(data[i] * scale + shift, max);
+    }
+}
@@ -0,0 +1,54 @@
+package utils;
+
+/**
+ * Tunable parameters of the {@link SimdMatrix} matrix multiplication kernel.
+ * The best values depend on the machine (vector width, cache sizes, core count), see {@link Autotuner}.
+ * <p>
+ * The vector width itself is not a parameter: the kernel always uses {@code FloatVector.SPECIES_PREFERRED}, which is
+ * already the widest species of the host (256 bits on AVX2, 512 bits on AVX-512). The Vector API only compiles to SIMD
+ * instructions when the species is a constant, so switching it at runtime makes the kernel many times slower.
+ * @param tileK Number of rows of B (columns of A) per cache tile.
+ * @param tileJ Number of columns of B and C per cache tile.
+ * @param unroll Number of vectors of a row of C accumulated in registers at once (1, 2 or 4; larger values act like 4).
+ * @param parallelThreshold Minimum number of multiply-adds (m * n * p) from which the rows of C are computed in parallel.
+ */
+public record KernelConfig(int tileK, int tileJ, int unroll, long parallelThreshold) {
+    /**
+     * The configuration used when no tuned profile is available:
+     * tiles large enough to behave like the untiled loop for typical layer sizes,
+     * and parallelism only for products big enough to amortize the fork/join overhead.
+     */
+    public static final KernelConfig DEFAULT = new KernelConfig(256, 1024, 2, 1L << 24);
+
+    public KernelConfig {
+        if (tileK < 1 || tileJ < 1 || unroll < 1 || parallelThreshold < 0) {
+            throw new IllegalArgumentException("Invalid kernel config: " + tileK + ", " + tileJ + ", " + unroll + ", " + parallelThreshold);
+        }
+    }
+
+    /**
+     * Parses the format written by {@link #toString()}, e.g. {@code "tileK=128,tileJ=512,unroll=2,parallelThreshold=16777216"}.
+     * Missing parameters keep their default value.
+     */
+    public static KernelConfig parse(String text) {
+        int tileK = DEFAULT.tileK, tileJ = DEFAULT.tileJ, unroll = DEFAULT.unroll;
+        long parallelThreshold = DEFAULT.parallelThreshold;
+        for (String part : text.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) throw new IllegalArgumentException("Malformed kernel config: " + text);
+            switch (kv[0].trim()) {
+                case "tileK" -> tileK = Integer.parseInt(kv[1].trim());
+                case "tileJ" -> tileJ = Integer.parseInt(kv[1].trim());
+                case "unroll" -> unroll = Integer.parseInt(kv[1].trim());
+                case "parallelThreshold" -> parallelThreshold = Long.parseLong(kv[1].trim());
+                default -> throw new IllegalArgumentException("Unknown kernel parameter: " + kv[0]);
+            }
+        }
+        return new KernelConfig(tileK, tileJ, unroll, parallelThreshold);
+    }
+
+    @Override
+    public String toString() {
+        return "tileK=" + tileK + ",tileJ=" + tileJ + ",unroll=" + unroll + ",parallelThreshold=" + parallelThreshold;
+    }
+}
@@ -0,0 +1,189 @@
+package utils;
+
+import jdk.incubator.vector.FloatVector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+/**
+ * Per-machine set of {@link KernelConfig}s, one per {@link ShapeClass}, persisted as a properties file.
+ * <p>
+ * At startup the profile is loaded from the file given by the {@code dljava.kernel.profile} system property, or from
+ * {@code ~/.dl-java/kernel-profile.properties} if it exists. A profile tuned on a different machine type
+ * (other architecture, core count or vector width) is ignored, and the defaults are used until {@link Autotuner} is run.
+ * With {@code -Ddljava.autotune=true}, a missing or mismatching profile is tuned and saved on first use instead.
+ */
+public final class KernelProfile {
+    private static final Logger logger = LoggerFactory.getLogger(KernelProfile.class);
+    public static final Path DEFAULT_PATH = Path.of(System.getProperty("user.home"), ".dl-java", "kernel-profile.properties");
+
+    /**
+     * Shape classes with different optimal kernel parameters, by the number of multiply-adds of the product.
+     * Products with a single row or column (matrix-vector) form their own class since they cannot reuse tiles.
+     */
+    public enum ShapeClass {
+        VECTOR, SMALL, MEDIUM, LARGE;
+
+        public static ShapeClass of(int m, int n, int p) {
+            if (m == 1 || p == 1) return VECTOR;
+            long work = (long) m * n * p;
+            if (work <= 64L * 64 * 64) return SMALL;
+            if (work <= 512L * 512 * 512) return MEDIUM;
+            return LARGE;
+        }
+    }
+
+    // Defaults until the startup profile is loaded, so that nothing run while tuning it sees an uninitialized profile
+    private static volatile KernelProfile active = new KernelProfile(Map.of());
+
+    static {
+        active = loadStartupProfile(() -> new Autotuner(3, 5).tuneAll());
+    }
+
+    private final Map<ShapeClass, KernelConfig> configs;
+    private final int strassenCutoff;
+    private final String machine;
+
+    public KernelProfile(Map<ShapeClass, KernelConfig> configs) {
+        this(configs, Strassen.DEFAULT_CUTOFF);
+    }
+
+    /**
+     * @param strassenCutoff Block size below which {@link Strassen} falls back to the classical kernel
+     *                       ({@link Integer#MAX_VALUE} if Strassen is never faster on this machine).
+     */
+    public KernelProfile(Map<ShapeClass, KernelConfig> configs, int strassenCutoff) {
+        this(configs, strassenCutoff, machineFingerprint());
+    }
+
+    private KernelProfile(Map<ShapeClass, KernelConfig> configs, int strassenCutoff, String machine) {
+        if (strassenCutoff < 1) throw new IllegalArgumentException("Invalid Strassen cutoff: " + strassenCutoff);
+        this.configs = new EnumMap<>(ShapeClass.class);
+        this.configs.putAll(configs);
+        this.strassenCutoff = strassenCutoff;
+        this.machine = machine;
+    }
+
+    /**
+     * @return The profile used by {@link SimdMatrix#matmul(SimdMatrix)}.
+     */
+    public static KernelProfile active() {
+        return active;
+    }
+
+    /**
+     * Makes the given profile the one used by all subsequent matrix multiplications.
+     */
+    public static void activate(KernelProfile profile) {
+        active = profile;
+    }
+
+    /**
+     * @return The tuned configuration for the shape class of an (m x n) * (n x p) product, or the default if that class was not tuned.
+     */
+    public KernelConfig configFor(int m, int n, int p) {
+        return configs.getOrDefault(ShapeClass.of(m, n, p), KernelConfig.DEFAULT);
+    }
+
+    public Map<ShapeClass, KernelConfig> configs() {
+        return Map.copyOf(configs);
+    }
+
+    /**
+     * @return The cutoff used by {@link Strassen#multiply(SimdMatrix, SimdMatrix)}.
+     */
+    public int strassenCutoff() {
+        return strassenCutoff;
+    }
+
+    /**
+     * Identifies a machine type: profiles are only valid on machines with the same fingerprint.
+     */
+    public static String machineFingerprint() {
+        return System.getProperty("os.arch") + "/" + Runtime.getRuntime().availableProcessors() + "cpu/"
+                + FloatVector.SPECIES_PREFERRED.vectorBitSize() + "bit";
+    }
+
+    public void save(Path path) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("machine", machine);
+        properties.setProperty("strassen.cutoff", Integer.toString(strassenCutoff));
+        configs.forEach((shape, config) -> properties.setProperty("matmul." + shape.name().toLowerCase(), config.toString()));
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            properties.store(writer, "SimdMatrix kernel profile generated by utils.Autotuner");
+        }
+    }
+
+    /**
+     * Loads a profile file.
+     * @throws IOException If the file cannot be read or contains an invalid configuration.
+     */
+    public static KernelProfile load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        Map<ShapeClass, KernelConfig> configs = new EnumMap<>(ShapeClass.class);
+        try {
+            for (ShapeClass shape : ShapeClass.values()) {
+                String value = properties.getProperty("matmul." + shape.name().toLowerCase());
+                if (value != null) configs.put(shape, KernelConfig.parse(value));
+            }
+            int strassenCutoff = Integer.parseInt(properties.getProperty("strassen.cutoff", Integer.toString(Strassen.DEFAULT_CUTOFF)));
+            return new KernelProfile(configs, strassenCutoff, properties.getProperty("machine", ""));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid kernel profile " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return true if this profile was tuned on a machine of the same type as the current one.
+     */
+    public boolean matchesThisMachine() {
+        return machine.equals(machineFingerprint());
+    }
+
+    /**
+     * @param tuner Tunes a new profile if {@code dljava.autotune} is set and no valid profile exists.
+     */
+    static KernelProfile loadStartupProfile(Supplier<KernelProfile> tuner) {
+        String configured = System.getProperty("dljava.kernel.profile");
+        Path path = configured != null ? Path.of(configured) : DEFAULT_PATH;
+        if (Files.isReadable(path)) {
+            try {
+                KernelProfile profile = load(path);
+                if (profile.matchesThisMachine()) {
+                    logger.info("Loaded kernel profile from {}", path);
+                    return profile;
+                }
+                logger.warn("Kernel profile {} was tuned for {} but this machine is {}.", path, profile.machine, machineFingerprint());
+            } catch (IOException e) {
+                logger.warn("Could not load kernel profile {}.", path, e);
+            }
+        }
+        if (Boolean.getBoolean("dljava.autotune")) {
+            logger.info("Autotuning SimdMatrix kernels for {}...", machineFingerprint());
+            KernelProfile profile = tuner.get();
+            try {
+                profile.save(path);
+                logger.info("Saved kernel profile to {}", path);
+            } catch (IOException e) {
+                logger.warn("Could not save kernel profile {}.", path, e);
+            }
+            return profile;
+        }
+        return new KernelProfile(Map.of());
+    }
+}
@@ -0,0 +1,297 @@
+package utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low-overhead instrumentation for training loops and {@link SimdMatrix} kernels.
+ * <p>
+ * All counters are {@link LongAdder}s, so concurrent updates from many threads never contend on a single cache line.
+ * Instrumentation is disabled by default and every recording site is guarded by {@link #enabled()}, a single
+ * volatile read, so the cost when disabled is one predictable branch. Enable it with {@link #enable()} or by
+ * starting the JVM with {@code -Ddljava.metrics=true}.
+ * <p>
+ * Besides the in-process counters, epochs and matrix multiplications are also emitted as custom JFR events
+ * ({@code dljava.Epoch}, {@code dljava.Matmul}) which show up in a flight recording when metrics are enabled.
+ */
+public final class Metrics {
+    private static volatile boolean enabled = Boolean.getBoolean("dljava.metrics");
+
+    /**
+     * The instrumented {@link SimdMatrix}, {@link SimdTensor} and {@link Strassen} kernels, and the optimizer update pass.
+     */
+    public enum Kernel {
+        MATMUL, ADD_ROW_VECTOR, ELEMENT_MULT, SUB, SCALE, DOT, AXPY, TRANSPOSE, SUM, MAX, BMM, STRASSEN, OPTIMIZER
+    }
+
+    private static final int KERNELS = Kernel.values().length;
+    private static final LongAdder[] kernelCalls = adders(KERNELS);
+    private static final LongAdder[] kernelFlops = adders(KERNELS);
+    private static final LongAdder[] kernelBytes = adders(KERNELS);
+
+    private static final LongAdder epochs = new LongAdder();
+    private static final LongAdder samples = new LongAdder();
+    private static final LongAdder updates = new LongAdder();
+    private static final LongAdder trainingNanos = new LongAdder();
+    private static final LongAdder allocatedBytes = new LongAdder();
+    private static final LongAdder arenaReused = new LongAdder();
+    private static final LongAdder arenaAllocated = new LongAdder();
+    private static final Histogram epochDuration = new Histogram();
+    private static final Histogram allocationPerStep = new Histogram();
+
+    private Metrics() {
+    }
+
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**
+     * Records one call of a kernel. Callers should check {@link #enabled()} first so that computing the arguments is free when disabled.
+     * @param kernel The kernel that was called.
+     * @param flops Number of floating-point operations performed (a fused multiply-add counts as 2).
+     * @param bytes Number of bytes read and written.
+     */
+    public static void kernel(Kernel kernel, long flops, long bytes) {
+        int k = kernel.ordinal();
+        kernelCalls[k].increment();
+        kernelFlops[k].add(flops);
+        kernelBytes[k].add(bytes);
+    }
+
+    /**
+     * Records one buffer handed out by a {@link ScratchArena}.
+     * @param reused Whether the buffer came from the pool rather than a new allocation.
+     */
+    static void arena(boolean reused) {
+        (reused ? arenaReused : arenaAllocated).increment();
+    }
+
+    /**
+     * Emits a JFR event for a finished matrix multiplication.
+     * @param startNanos {@link System#nanoTime()} at the start of the multiplication.
+     */
+    static void matmulEvent(long startNanos, int m, int n, int p) {
+        MatmulEvent event = new MatmulEvent();
+        if (event.isEnabled()) {
+            event.m = m;
+            event.n = n;
+            event.p = p;
+            event.kernelNanos = System.nanoTime() - startNanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a finished training epoch.
+     * @param epoch The epoch number.
+     * @param nanos Duration of the epoch.
+     * @param sampleCount Number of samples processed in the epoch.
+     * @param updateCount Number of weight updates performed in the epoch.
+     * @param allocated Bytes allocated by the training thread during the epoch (see {@link #threadAllocatedBytes()}).
+     */
+    public static void epoch(int epoch, long nanos, long sampleCount, long updateCount, long allocated) {
+        epochs.increment();
+        samples.add(sampleCount);
+        updates.add(updateCount);
+        trainingNanos.add(nanos);
+        allocatedBytes.add(allocated);
+        epochDuration.record(nanos);
+        if (sampleCount > 0) {
+            allocationPerStep.record(allocated / sampleCount);
+        }
+
+        EpochEvent event = new EpochEvent();
+        if (event.isEnabled()) {
+            event.epoch = epoch;
+            event.epochNanos = nanos;
+            event.samples = sampleCount;
+            event.updates = updateCount;
+            event.allocated = allocated;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return Total bytes allocated so far by the current thread, or -1 if the JVM does not support measuring it.
+     */
+    public static long threadAllocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean) {
+            return bean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * Takes a point-in-time snapshot of all metrics. Counters updated concurrently may be slightly out of sync with each other.
+     * @return The metric values by name, in a stable order.
+     */
+    public static Snapshot snapshot() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        long nanos = trainingNanos.sum();
+        values.put("training.epochs", epochs.sum());
+        values.put("training.samples", samples.sum());
+        values.put("training.updates", updates.sum());
+        values.put("training.samplesPerSecond", nanos == 0 ? 0.0 : samples.sum() * 1e9 / nanos);
+        values.put("training.epochNanos.p50", epochDuration.percentile(0.50));
+        values.put("training.epochNanos.p99", epochDuration.percentile(0.99));
+        values.put("training.epochNanos.max", epochDuration.max());
+        values.put("training.allocatedBytes", allocatedBytes.sum());
+        values.put("training.allocatedBytesPerStep.p50", allocationPerStep.percentile(0.50));
+        values.put("arena.reused", arenaReused.sum());
+        values.put("arena.allocated", arenaAllocated.sum());
+        for (Kernel kernel : Kernel.values()) {
+            int k = kernel.ordinal();
+            String prefix = "kernel." + kernel.name().toLowerCase() + ".";
+            values.put(prefix + "calls", kernelCalls[k].sum());
+            values.put(prefix + "flops", kernelFlops[k].sum());
+            values.put(prefix + "bytes", kernelBytes[k].sum());
+        }
+        return new Snapshot(values);
+    }
+
+    /**
+     * Resets all counters and histograms to zero.
+     */
+    public static void reset() {
+        for (int k = 0; k < KERNELS; k++) {
+            kernelCalls[k].reset();
+            kernelFlops[k].reset();
+            kernelBytes[k].reset();
+        }
+        epochs.reset();
+        samples.reset();
+        updates.reset();
+        trainingNanos.reset();
+        allocatedBytes.reset();
+        arenaReused.reset();
+        arenaAllocated.reset();
+        epochDuration.reset();
+        allocationPerStep.reset();
+    }
+
+    /**
+     * Immutable export of the metric values.
+     * @param values The metric values by name.
+     */
+    public record Snapshot(Map<String, Number> values) {
+        public Snapshot {
+            values = Collections.unmodifiableMap(values);
+        }
+
+        public long get(String name) {
+            return values.getOrDefault(name, 0).longValue();
+        }
+
+        /**
+         * @return One "name value" line per metric, e.g. for logging or scraping.
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            values.forEach((name, value) -> sb.append(name).append(' ').append(value).append('\n'));
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Lock-free histogram with power-of-two buckets: bucket i counts the values in [2^(i-1), 2^i).
+     * Percentiles are therefore approximate (upper bound of the bucket), which is enough for latencies and sizes.
+     */
+    static final class Histogram {
+        private final LongAdder[] buckets = adders(Long.SIZE + 1);
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long value) {
+            if (value < 0) value = 0;
+            buckets[Long.SIZE - Long.numberOfLeadingZeros(value)].increment();
+            max.accumulate(value);
+        }
+
+        long percentile(double p) {
+            long total = 0;
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(p * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(i == 0 ? 0 : (1L << i) - 1, max.get());
+                }
+            }
+            return max.get();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        void reset() {
+            for (LongAdder bucket : buckets) bucket.reset();
+            max.reset();
+        }
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    @Name("dljava.Epoch")
+    @Label("Training Epoch")
+    @Category("dl-java")
+    static class EpochEvent extends Event {
+        @Label("Epoch")
+        int epoch;
+        @Label("Epoch Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long epochNanos;
+        @Label("Samples")
+        long samples;
+        @Label("Weight Updates")
+        long updates;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("dljava.Matmul")
+    @Label("SimdMatrix Multiplication")
+    @Category("dl-java")
+    static class MatmulEvent extends Event {
+        @Label("Rows of A")
+        int m;
+        @Label("Columns of A")
+        int n;
+        @Label("Columns of B")
+        int p;
+        @Label("Kernel Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long kernelNanos;
+    }
+}
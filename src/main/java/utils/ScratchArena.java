@@ -0,0 +1,190 @@
+package utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scoped pool for the buffers of temporary {@link SimdMatrix} results.
+ * <p>
+ * While an arena is open on a thread, the {@link SimdMatrix} operations called on that thread take their result buffer
+ * from a per-thread free list instead of allocating a new (zero-filled) array, and {@link #close()} hands all of them back.
+ * Training loops that produce the same shapes every step therefore keep reusing the same few buffers, and large
+ * temporaries no longer end up as short-lived humongous objects under G1. Kernels that overwrite the whole output
+ * get the buffer as is; only accumulating kernels such as matmul pay for zeroing it.
+ * <pre>{@code
+ * try (ScratchArena scratch = ScratchArena.open()) {
+ *     float loss = prediction.sub(target).elementMult(mask).sum(); // Both temporaries are pooled
+ * }
+ * }</pre>
+ * Results created inside the scope must not be used after it is closed, because their buffers will be handed out again.
+ * Use {@link SimdMatrix#copy()} for a result that has to outlive the scope.
+ * <p>
+ * Arenas nest: an inner scope returns only its own buffers, into the same per-thread pool. They must be closed on the
+ * thread that opened them, innermost first, which try-with-resources guarantees. Buffers are bucketed by their exact
+ * length, since a training loop repeats the same shapes; each bucket and the whole pool of a thread are bounded, and
+ * buffers beyond that are left to the garbage collector. A thread gets a pool only once it opens an arena, and while no
+ * arena is open anywhere, allocating a result costs a single volatile read on top of the plain heap allocation.
+ * <p>
+ * Pooled results: the {@link SimdMatrix} operations, {@link Strassen} products and the {@link SimdTensor} operations
+ * ({@code bmm} and the broadcasting element-wise ops). Not pooled:
+ * <ul>
+ *     <li>{@link SimdDoubleMatrix} results, since the pool only holds float buffers.</li>
+ *     <li>The output {@code FeatureMap}s of {@code Conv2D} and {@code Pooling}: they are kept by the layer for the backward
+ *     pass and passed on to the next layer, so they outlive any scope a caller could open around the layer.
+ *     Their per-image temporaries are pooled, in arenas opened by the layers themselves.</li>
+ *     <li>Matrices and tensors created with their constructors, e.g. weights and gradients.</li>
+ * </ul>
+ */
+public final class ScratchArena implements AutoCloseable {
+    private static final int MAX_BUFFERS_PER_SIZE = 8;
+    private static final long MAX_POOLED_BYTES = 64L << 20;
+
+    // No initial value: threads that never open an arena do not get a pool
+    private static final ThreadLocal<Pool> POOL = new ThreadLocal<>();
+    // Number of arenas open on any thread, so that allocations skip the thread-local lookup while there is none
+    private static final AtomicInteger OPEN = new AtomicInteger();
+
+    private final Pool pool;
+    private final Thread owner;
+    private final ScratchArena parent;
+    private final ArrayList<float[]> checkedOut = new ArrayList<>();
+    private long reused;
+    private long allocated;
+    private boolean closed;
+
+    // Free buffers of one thread and the innermost open arena on it
+    private static final class Pool {
+        final Map<Integer, ArrayDeque<float[]>> free = new HashMap<>();
+        long pooledBytes;
+        ScratchArena active;
+    }
+
+    private ScratchArena(Pool pool, ScratchArena parent) {
+        this.pool = pool;
+        this.owner = Thread.currentThread();
+        this.parent = parent;
+    }
+
+    /**
+     * Opens a new scope on the current thread. Every {@link SimdMatrix} result created on this thread until it is
+     * closed is backed by a pooled buffer.
+     */
+    public static ScratchArena open() {
+        Pool pool = POOL.get();
+        if (pool == null) {
+            pool = new Pool();
+            POOL.set(pool);
+        }
+        ScratchArena arena = new ScratchArena(pool, pool.active);
+        pool.active = arena;
+        OPEN.incrementAndGet();
+        return arena;
+    }
+
+    /**
+     * @return The innermost open arena of the current thread, or null if there is none.
+     */
+    public static ScratchArena active() {
+        if (OPEN.get() == 0) return null;
+        Pool pool = POOL.get();
+        return pool == null ? null : pool.active;
+    }
+
+    /**
+     * Allocates a zero-filled matrix from the active arena of the current thread, or on the heap if there is none.
+     */
+    public static SimdMatrix allocate(int rows, int cols) {
+        return allocate(rows, cols, true);
+    }
+
+    /**
+     * Allocates a matrix for a kernel result.
+     * @param zeroed Whether the kernel needs a zero-filled buffer. Kernels that write every element pass false,
+     *               so that a reused buffer is handed out with its old contents.
+     */
+    static SimdMatrix allocate(int rows, int cols, boolean zeroed) {
+        return new SimdMatrix(rows, cols, buffer(rows * cols, zeroed));
+    }
+
+    /**
+     * Allocates a result buffer of the given length from the active arena of the current thread, or on the heap if there is none.
+     * @param zeroed Whether the kernel needs a zero-filled buffer.
+     */
+    static float[] buffer(int length, boolean zeroed) {
+        ScratchArena arena = active();
+        return arena == null ? new float[length] : arena.take(length, zeroed);
+    }
+
+    private float[] take(int length, boolean zeroed) {
+        ArrayDeque<float[]> bucket = pool.free.get(length);
+        float[] buffer = bucket == null ? null : bucket.pollFirst();
+        boolean hit = buffer != null;
+        if (hit) {
+            pool.pooledBytes -= (long) Float.BYTES * length;
+            if (zeroed) Arrays.fill(buffer, 0.0f);
+            reused++;
+        } else {
+            buffer = new float[length];
+            allocated++;
+        }
+        if (Metrics.enabled()) Metrics.arena(hit);
+        checkedOut.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * @return Number of buffers this scope took from the pool.
+     */
+    public long reused() {
+        return reused;
+    }
+
+    /**
+     * @return Number of buffers this scope had to allocate because the pool had none of the requested size.
+     */
+    public long allocated() {
+        return allocated;
+    }
+
+    /**
+     * Returns every buffer checked out by this scope to the pool of the thread and makes the enclosing scope active again.
+     * @throws IllegalStateException If called from another thread, or while a nested scope is still open.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("ScratchArena must be closed by the thread that opened it");
+        }
+        if (pool.active != this) {
+            throw new IllegalStateException("ScratchArena closed while a nested arena is still open");
+        }
+        // Pushed to the front, so that the buffer handed out next is the most recently used one, likely still in cache
+        for (float[] buffer : checkedOut) {
+            long bytes = (long) Float.BYTES * buffer.length;
+            ArrayDeque<float[]> bucket = pool.free.computeIfAbsent(buffer.length, length -> new ArrayDeque<>());
+            if (bucket.size() < MAX_BUFFERS_PER_SIZE && pool.pooledBytes + bytes <= MAX_POOLED_BYTES) {
+                bucket.addFirst(buffer);
+                pool.pooledBytes += bytes;
+            }
+        }
+        checkedOut.clear();
+        pool.active = parent;
+        closed = true;
+        OPEN.decrementAndGet();
+    }
+
+    /**
+     * Drops all free buffers of the current thread, e.g. once a phase working on large shapes is over.
+     */
+    public static void trim() {
+        Pool pool = POOL.get();
+        if (pool == null) return;
+        pool.free.clear();
+        pool.pooledBytes = 0;
+    }
+}
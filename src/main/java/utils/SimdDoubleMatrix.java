@@ -0,0 +1,417 @@
+package utils;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Double-precision counterpart of {@link SimdMatrix}, with the same kernels on {@link DoubleVector}:
+ * for numerically sensitive work (ill-conditioned systems, gradient checking) that needs float64 accuracy at vector speed.
+ * A vector holds half as many doubles as floats, so the kernels do about half the work per instruction of their float versions.
+ * <p>
+ * Results are always allocated on the heap (the {@link ScratchArena} only pools float buffers), and the kernels are not
+ * counted in {@link Metrics}.
+ */
+public class SimdDoubleMatrix {
+    public final int rows;
+    public final int cols;
+    public final double[] data;
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    public SimdDoubleMatrix(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.data = new double[rows * cols];
+    }
+
+    public SimdDoubleMatrix(int rows, int cols, double[] data) {
+        this.rows = rows;
+        this.cols = cols;
+        this.data = data;
+    }
+
+    /**
+     * Widens a float matrix to double precision. Every float is exactly representable as a double, so nothing is lost.
+     */
+    public static SimdDoubleMatrix of(SimdMatrix m) {
+        int len = m.rows * m.cols;
+        double[] data = new double[len];
+        // Plain loop: C2 vectorizes the float to double conversion itself, and a second (float) species would have to
+        // be mixed in here to do it with the Vector API
+        for (int i = 0; i < len; i++) data[i] = m.data[i];
+        return new SimdDoubleMatrix(m.rows, m.cols, data);
+    }
+
+    /**
+     * Narrows this matrix to single precision, rounding every element to the nearest float.
+     * @return A new SimdMatrix with the same shape.
+     */
+    public SimdMatrix toFloat() {
+        int len = rows * cols;
+        float[] result = new float[len];
+        for (int i = 0; i < len; i++) result[i] = (float) data[i];
+        return new SimdMatrix(rows, cols, result);
+    }
+
+    /**
+     * Matrix Multiplication (C = A * B).
+     * The same tiled, register-blocked kernel as {@link SimdMatrix#matmul(SimdMatrix)}. The tiles come from the active
+     * {@link KernelProfile}, with the tile width halved so that a tile of B takes as many bytes as a tile of floats.
+     * @param other The matrix to multiply with this matrix. Must have shape (columns of this, any).
+     * @return A new SimdDoubleMatrix that is the result of multiplying this matrix with the other matrix.
+     */
+    public SimdDoubleMatrix matmul(SimdDoubleMatrix other) {
+        KernelConfig tuned = KernelProfile.active().configFor(this.rows, this.cols, other.cols);
+        return matmul(other, new KernelConfig(tuned.tileK(), Math.max(SPECIES.length(), tuned.tileJ() / 2), tuned.unroll(), tuned.parallelThreshold()));
+    }
+
+    /**
+     * Matrix Multiplication (C = A * B) with an explicit kernel configuration.
+     * Every configuration adds the products for each element of C in the same order, so the result does not depend on the configuration.
+     * @param other The matrix to multiply with this matrix. Must have shape (columns of this, any).
+     * @param config The kernel parameters to use.
+     * @return A new SimdDoubleMatrix that is the result of multiplying this matrix with the other matrix.
+     */
+    public SimdDoubleMatrix matmul(SimdDoubleMatrix other, KernelConfig config) {
+        if (this.cols != other.rows) {
+            throw new IllegalArgumentException("Shape mismatch: " + shape() + " vs " + other.shape());
+        }
+        SimdDoubleMatrix result = new SimdDoubleMatrix(this.rows, other.cols);
+
+        // Cache local variables for speed
+        int m = this.rows;
+        int n = this.cols;
+        int p = other.cols;
+
+        if ((long) m * n * p >= config.parallelThreshold() && m > 1) {
+            // Split the rows of C into one chunk per worker. Each task writes a disjoint set of rows, so no synchronization is needed.
+            int chunks = Math.min(m, ForkJoinPool.getCommonPoolParallelism() * 4);
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                int from = (int) ((long) m * c / chunks);
+                int to = (int) ((long) m * (c + 1) / chunks);
+                gemm(this.data, from * n, n, other.data, 0, p, result.data, from * p, p, to - from, n, p, config);
+            });
+        } else {
+            gemm(this.data, 0, n, other.data, 0, p, result.data, 0, p, m, n, p, config);
+        }
+        return result;
+    }
+
+    /**
+     * Blocked GEMM kernel: C += A * B on row-major sub-matrices of larger arrays, see {@link SimdMatrix} for the strides and tiling.
+     */
+    static void gemm(double[] a, int aOff, int lda, double[] b, int bOff, int ldb, double[] c, int cOff, int ldc,
+                     int m, int n, int p, KernelConfig config) {
+        int tileK = config.tileK();
+        int tileJ = config.tileJ();
+
+        // Loop kk, jj: Tiles of B (rows kk..kk+tileK, columns jj..jj+tileJ)
+        for (int kk = 0; kk < n; kk += tileK) {
+            int kEnd = Math.min(kk + tileK, n);
+            for (int jj = 0; jj < p; jj += tileJ) {
+                int width = Math.min(jj + tileJ, p) - jj;
+
+                // Loop i: Picking row of A and C (Accessing C sequentially)
+                for (int i = 0; i < m; i++) {
+                    accumulateRow(a, aOff + i * lda, kk, kEnd, b, bOff + jj, ldb, c, cOff + i * ldc + jj, width, config.unroll());
+                }
+            }
+        }
+    }
+
+    /**
+     * Register-blocked row kernel of the GEMM: c[cOff + j] += sum over k in [kFrom, kTo) of a[aOff + k] * b[bOff + k * ldb + j],
+     * for j in [0, len), with up to four vector accumulators of C kept in registers during the k loop.
+     */
+    private static void accumulateRow(double[] a, int aOff, int kFrom, int kTo, double[] b, int bOff, int ldb,
+                                      double[] c, int cOff, int len, int unroll) {
+        int vlen = SPECIES.length();
+        int loopBound = SPECIES.loopBound(len);
+        int j = 0;
+
+        // Loop j: Four accumulators
+        if (unroll >= 4) {
+            for (; j + 4 * vlen <= loopBound; j += 4 * vlen) {
+                var acc0 = DoubleVector.fromArray(SPECIES, c, cOff + j);
+                var acc1 = DoubleVector.fromArray(SPECIES, c, cOff + j + vlen);
+                var acc2 = DoubleVector.fromArray(SPECIES, c, cOff + j + 2 * vlen);
+                var acc3 = DoubleVector.fromArray(SPECIES, c, cOff + j + 3 * vlen);
+                for (int k = kFrom; k < kTo; k++) {
+                    double valA = a[aOff + k];
+                    if (valA == 0.0) continue;
+                    int rowOffsetB = bOff + k * ldb + j;
+                    acc0 = DoubleVector.fromArray(SPECIES, b, rowOffsetB).mul(valA).add(acc0);
+                    acc1 = DoubleVector.fromArray(SPECIES, b, rowOffsetB + vlen).mul(valA).add(acc1);
+                    acc2 = DoubleVector.fromArray(SPECIES, b, rowOffsetB + 2 * vlen).mul(valA).add(acc2);
+                    acc3 = DoubleVector.fromArray(SPECIES, b, rowOffsetB + 3 * vlen).mul(valA).add(acc3);
+                }
+                acc0.intoArray(c, cOff + j);
+                acc1.intoArray(c, cOff + j + vlen);
+                acc2.intoArray(c, cOff + j + 2 * vlen);
+                acc3.intoArray(c, cOff + j + 3 * vlen);
+            }
+        }
+        // Loop j: Two accumulators
+        if (unroll >= 2) {
+            for (; j + 2 * vlen <= loopBound; j += 2 * vlen) {
+                var acc0 = DoubleVector.fromArray(SPECIES, c, cOff + j);
+                var acc1 = DoubleVector.fromArray(SPECIES, c, cOff + j + vlen);
+                for (int k = kFrom; k < kTo; k++) {
+                    double valA = a[aOff + k];
+                    if (valA == 0.0) continue;
+                    int rowOffsetB = bOff + k * ldb + j;
+                    acc0 = DoubleVector.fromArray(SPECIES, b, rowOffsetB).mul(valA).add(acc0);
+                    acc1 = DoubleVector.fromArray(SPECIES, b, rowOffsetB + vlen).mul(valA).add(acc1);
+                }
+                acc0.intoArray(c, cOff + j);
+                acc1.intoArray(c, cOff + j + vlen);
+            }
+        }
+        // Loop j: Remaining full vectors, acc = acc + (vb * valA)
+        for (; j < loopBound; j += vlen) {
+            var acc = DoubleVector.fromArray(SPECIES, c, cOff + j);
+            for (int k = kFrom; k < kTo; k++) {
+                double valA = a[aOff + k];
+                if (valA == 0.0) continue;
+                acc = DoubleVector.fromArray(SPECIES, b, bOff + k * ldb + j).mul(valA).add(acc);
+            }
+            acc.intoArray(c, cOff + j);
+        }
+        // Cleanup Scalar Loop (Tail)
+        for (; j < len; j++) {
+            double sum = c[cOff + j];
+            for (int k = kFrom; k < kTo; k++) {
+                double valA = a[aOff + k];
+                if (valA == 0.0) continue;
+                sum += valA * b[bOff + k * ldb + j];
+            }
+            c[cOff + j] = sum;
+        }
+    }
+
+    /**
+     * @return A new SimdDoubleMatrix with the same shape and elements as this one.
+     */
+    public SimdDoubleMatrix copy() {
+        return new SimdDoubleMatrix(rows, cols, Arrays.copyOf(data, rows * cols));
+    }
+
+    /**
+     * Broadcast Add (Bias Addition).
+     * Adds a bias vector (1 x columns) to every row of this matrix.
+     * @param vector The bias vector to add. Must have shape (1, columns).
+     * @return A new SimdDoubleMatrix where the bias vector has been added to each row of this matrix.
+     */
+    public SimdDoubleMatrix addRowVector(SimdDoubleMatrix vector) {
+        if (vector.rows != 1 || vector.cols != this.cols) {
+            throw new IllegalArgumentException("Shape mismatch for bias add");
+        }
+        SimdDoubleMatrix result = new SimdDoubleMatrix(this.rows, this.cols);
+        int loopBound = SPECIES.loopBound(this.cols);
+
+        for (int i = 0; i < this.rows; i++) {
+            int offset = i * this.cols;
+            int j = 0;
+            // Vectorized addition
+            for (; j < loopBound; j += SPECIES.length()) {
+                var vData = DoubleVector.fromArray(SPECIES, this.data, offset + j);
+                var vBias = DoubleVector.fromArray(SPECIES, vector.data, j);
+                vData.add(vBias).intoArray(result.data, offset + j);
+            }
+            // Tail loop
+            for (; j < this.cols; j++) {
+                result.data[offset + j] = this.data[offset + j] + vector.data[j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Element-wise Multiplication (Hadamard Product).
+     * @param other The other matrix to multiply element-wise with this matrix. Must have the same shape.
+     * @return A new SimdDoubleMatrix where each element is the product of the corresponding elements in this and the other matrix.
+     */
+    public SimdDoubleMatrix elementMult(SimdDoubleMatrix other) {
+        if (this.rows != other.rows || this.cols != other.cols) throw new IllegalArgumentException("Shape mismatch");
+        SimdDoubleMatrix result = new SimdDoubleMatrix(this.rows, this.cols);
+        int len = this.data.length;
+        int loopBound = SPECIES.loopBound(len);
+        int i = 0;
+
+        for (; i < loopBound; i += SPECIES.length()) {
+            var va = DoubleVector.fromArray(SPECIES, this.data, i);
+            var vb = DoubleVector.fromArray(SPECIES, other.data, i);
+            va.mul(vb).intoArray(result.data, i);
+        }
+        for (; i < len; i++) {
+            result.data[i] = this.data[i] * other.data[i];
+        }
+        return result;
+    }
+
+    /**
+     * Element-wise Subtraction.
+     * @param other The other matrix to subtract from this matrix. Must have the same shape.
+     * @return A new SimdDoubleMatrix where each element is the difference of the corresponding elements in this and the other matrix (this - other).
+     */
+    public SimdDoubleMatrix sub(SimdDoubleMatrix other) {
+        if (this.rows != other.rows || this.cols != other.cols) throw new IllegalArgumentException("Shape mismatch");
+        SimdDoubleMatrix result = new SimdDoubleMatrix(this.rows, this.cols);
+        int len = this.data.length;
+        int loopBound = SPECIES.loopBound(len);
+        int i = 0;
+
+        for (; i < loopBound; i += SPECIES.length()) {
+            var va = DoubleVector.fromArray(SPECIES, this.data, i);
+            var vb = DoubleVector.fromArray(SPECIES, other.data, i);
+            va.sub(vb).intoArray(result.data, i);
+        }
+        for (; i < len; i++) {
+            result.data[i] = this.data[i] - other.data[i];
+        }
+        return result;
+    }
+
+    /**
+     * Scalar Multiplication.
+     * @param alpha The scalar value to multiply each element of this matrix by.
+     * @return A new SimdDoubleMatrix where each element is the product of the corresponding element in this matrix and the scalar alpha.
+     */
+    public SimdDoubleMatrix scale(double alpha) {
+        SimdDoubleMatrix result = new SimdDoubleMatrix(this.rows, this.cols);
+        int len = this.data.length;
+        int loopBound = SPECIES.loopBound(len);
+        int i = 0;
+
+        for (; i < loopBound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, this.data, i)
+                    .mul(alpha)
+                    .intoArray(result.data, i);
+        }
+        for (; i < len; i++) result.data[i] = this.data[i] * alpha;
+        return result;
+    }
+
+    /**
+     * Dot Product.
+     * Treats both matrices as flat vectors and computes the sum of their element-wise products in one pass.
+     * @param other The other matrix. Must have the same shape.
+     * @return The sum of the element-wise products of this and the other matrix.
+     */
+    public double dot(SimdDoubleMatrix other) {
+        if (this.rows != other.rows || this.cols != other.cols) throw new IllegalArgumentException("Shape mismatch");
+        int len = this.data.length;
+        int loopBound = SPECIES.loopBound(len);
+        var vSum = DoubleVector.zero(SPECIES);
+        int i = 0;
+
+        for (; i < loopBound; i += SPECIES.length()) {
+            var va = DoubleVector.fromArray(SPECIES, this.data, i);
+            var vb = DoubleVector.fromArray(SPECIES, other.data, i);
+            vSum = va.fma(vb, vSum);
+        }
+        double sum = vSum.reduceLanes(VectorOperators.ADD);
+
+        for (; i < len; i++) sum += this.data[i] * other.data[i];
+        return sum;
+    }
+
+    /**
+     * In-place Scaled Addition (AXPY: this = this + alpha * other).
+     * @param other The matrix to add. Must have the same shape.
+     * @param alpha The scalar to multiply the other matrix with before adding it.
+     */
+    public void addScaledInPlace(SimdDoubleMatrix other, double alpha) {
+        if (this.rows != other.rows || this.cols != other.cols) throw new IllegalArgumentException("Shape mismatch");
+        int len = this.data.length;
+        int loopBound = SPECIES.loopBound(len);
+        int i = 0;
+
+        for (; i < loopBound; i += SPECIES.length()) {
+            var vx = DoubleVector.fromArray(SPECIES, other.data, i);
+            var vy = DoubleVector.fromArray(SPECIES, this.data, i);
+            vx.mul(alpha).add(vy).intoArray(this.data, i);
+        }
+        for (; i < len; i++) this.data[i] += alpha * other.data[i];
+    }
+
+    /**
+     * Transpose of the matrix.
+     * @return A new SimdDoubleMatrix that is the transpose of this matrix (rows and columns swapped).
+     */
+    public SimdDoubleMatrix transpose() {
+        SimdDoubleMatrix t = new SimdDoubleMatrix(this.cols, this.rows);
+        for (int i = 0; i < this.rows; i++) {
+            for (int j = 0; j < this.cols; j++) {
+                t.data[j * this.rows + i] = this.data[i * this.cols + j];
+            }
+        }
+        return t;
+    }
+
+    /**
+     * @return The sum of all elements in the matrix.
+     */
+    public double sum() {
+        int len = this.data.length;
+        int loopBound = SPECIES.loopBound(len);
+        var vSum = DoubleVector.zero(SPECIES);
+        int i = 0;
+
+        for (; i < loopBound; i += SPECIES.length()) {
+            vSum = vSum.add(DoubleVector.fromArray(SPECIES, this.data, i));
+        }
+        double sum = vSum.reduceLanes(VectorOperators.ADD);
+
+        for (; i < len; i++) sum += this.data[i];
+        return sum;
+    }
+
+    /**
+     * @return The maximum element in the matrix.
+     */
+    public double max() {
+        int len = this.data.length;
+        int loopBound = SPECIES.loopBound(len);
+        var vMax = DoubleVector.broadcast(SPECIES, -Double.MAX_VALUE);
+        int i = 0;
+
+        for (; i < loopBound; i += SPECIES.length()) {
+            vMax = vMax.max(DoubleVector.fromArray(SPECIES, this.data, i));
+        }
+        double max = vMax.reduceLanes(VectorOperators.MAX);
+
+        for (; i < len; i++) max = Math.max(max, this.data[i]);
+        return max;
+    }
+
+    public String shape() { return "(" + rows + ", " + cols + ")"; }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return cols;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("DoubleMatrix ").append(shape()).append("\n");
+        int rMax = Math.min(rows, 6);
+        int cMax = Math.min(cols, 6);
+        for (int i = 0; i < rMax; i++) {
+            sb.append("[ ");
+            for (int j = 0; j < cMax; j++) sb.append(String.format("%.6f ", data[i * cols + j]));
+            if (cols > cMax) sb.append("... ");
+            sb.append("]\n");
+        }
+        return sb.toString();
+    }
+}
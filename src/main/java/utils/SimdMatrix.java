@@ -4,7 +4,9 @@ import jdk.incubator.vector.FloatVector;
 import jdk.incubator.vector.VectorOperators;
 import jdk.incubator.vector.VectorSpecies;
 
-import java.util.Random;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 public class SimdMatrix {
     public final int rows;
@@ -30,64 +32,191 @@ public class SimdMatrix {
      * This method multiplies this matrix (A) with another matrix (B) and returns the result (C).
      * It uses SIMD vectorization for the innermost loop to optimize performance.
      * In the innermost loop, we always walk across contiguous memory of B’s row and C’s row. This is cache-friendly.
+     * The tile sizes, unroll factor and parallel threshold are taken from the active {@link KernelProfile}
+     * for the shape class of this product (see {@link Autotuner}).
      * @param other The matrix to multiply with this matrix. Must have shape (columns of this, any).
      * @return A new SimdMatrix that is the result of multiplying this matrix with the other matrix.
      */
     public SimdMatrix matmul(SimdMatrix other) {
+        return matmul(other, KernelProfile.active().configFor(this.rows, this.cols, other.cols));
+    }
+
+    /**
+     * Matrix Multiplication (C = A * B) with an explicit kernel configuration.
+     * Every configuration adds the products for each element of C in the same order, so the result does not depend on the configuration.
+     * @param other The matrix to multiply with this matrix. Must have shape (columns of this, any).
+     * @param config The kernel parameters to use.
+     * @return A new SimdMatrix that is the result of multiplying this matrix with the other matrix.
+     */
+    public SimdMatrix matmul(SimdMatrix other, KernelConfig config) {
         if (this.cols != other.rows) {
             throw new IllegalArgumentException("Shape mismatch: " + shape() + " vs " + other.shape());
         }
-        SimdMatrix result = new SimdMatrix(this.rows, other.cols);
+        SimdMatrix result = ScratchArena.allocate(this.rows, other.cols, true); // The kernel accumulates into C
 
         // Cache local variables for speed
         int m = this.rows;
         int n = this.cols;
         int p = other.cols;
-        int loopBound = SPECIES.loopBound(p);
-
-        // Loop i: Picking row of A and C (Accessing C sequentially)
-        for (int i = 0; i < m; i++) {
-            int rowOffsetC = i * p; // Row offset for C (result)
-            int rowOffsetA = i * n; // Row offset for A (this)
-
-            // Loop k: Iterating over columns of A / rows of B (Accessing A sequentially, B in row chunks)
-            // Take one element from row i of A, and multiply it with the corresponding row k of B, accumulating into row i of C.
-            // Take A[i][k] and multiply with B[k][j...] to accumulate into C[i][j...]
-            for (int k = 0; k < n; k++) {
-                float valA = this.data[rowOffsetA + k];
+        long start = Metrics.enabled() ? System.nanoTime() : 0;
+
+        if ((long) m * n * p >= config.parallelThreshold() && m > 1) {
+            // Split the rows of C into one chunk per worker. Each task writes a disjoint set of rows, so no synchronization is needed.
+            int chunks = Math.min(m, ForkJoinPool.getCommonPoolParallelism() * 4);
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                int from = (int) ((long) m * c / chunks);
+                int to = (int) ((long) m * (c + 1) / chunks);
+                gemm(this.data, from * n, n, other.data, 0, p, result.data, from * p, p, to - from, n, p, config);
+            });
+        } else {
+            gemm(this.data, 0, n, other.data, 0, p, result.data, 0, p, m, n, p, config);
+        }
 
-                // Optimization: If A[i][k] is zero, skip the entire row operation for this k (sparse optimization)
-                if (valA == 0.0f) continue;
+        if (Metrics.enabled()) {
+            Metrics.kernel(Metrics.Kernel.MATMUL, 2L * m * n * p, Float.BYTES * ((long) m * n + (long) n * p + (long) m * p));
+            Metrics.matmulEvent(start, m, n, p);
+        }
+        return result;
+    }
 
-                int rowOffsetB = k * p; // Row offset for B (other) corresponding to the k-th row which we will multiply with valA
-                int j = 0;
-
-                // Loop j: Iterating over columns of B and C (Accessing B and C sequentially in chunks)
-                // Multiply the scalar valA with the k-th row of B and add it to the i-th row of C. We will do this in vectorized chunks.
-                // We will process p columns in chunks of the vector size (loopBound) for SIMD, and then handle any remaining columns in a scalar loop.
-                for (; j < loopBound; j += SPECIES.length()) {
-                    // Load Accumulator (C)
-                    // We load the current values of C[i][j...] into a vector register to accumulate the results. This allows us to perform the FMA operation in-place.
-                    var vc = FloatVector.fromArray(SPECIES, result.data, rowOffsetC + j);
-                    // Load Weights (B)
-                    // We load a vector from the k-th row of B starting at column j. This gives us a vector of values that we will multiply by the scalar valA.
-                    var vb = FloatVector.fromArray(SPECIES, other.data, rowOffsetB + j);
-
-                    // FMA: vc = vc + (vb * valA)
-                    // We perform a fused multiply-add operation where we multiply the vector vb by the scalar valA and then add it to the accumulator vc. This is more efficient than separate multiply and add operations.
-                    vc = vb.mul(valA).add(vc);
-
-                    // Store back
-                    vc.intoArray(result.data, rowOffsetC + j);
+    /**
+     * Blocked GEMM kernel: C += A * B on row-major sub-matrices of larger arrays.
+     * A is (m x n) starting at aOff with row stride lda, B is (n x p) starting at bOff with row stride ldb,
+     * and C is (m x p) starting at cOff with row stride ldc. The strides let callers multiply blocks of a bigger matrix in place.
+     * <p>
+     * The k and j loops are tiled so that a (tileK x tileJ) block of B stays in cache while it is reused for every row of A.
+     * Within a tile, a few vectors of a row of C are kept in registers while all k of the tile are added to them, so C is
+     * loaded and stored once per tile instead of once per k. For each element of C the products are still added in
+     * increasing k order, exactly like the untiled loop.
+     */
+    static void gemm(float[] a, int aOff, int lda, float[] b, int bOff, int ldb, float[] c, int cOff, int ldc,
+                     int m, int n, int p, KernelConfig config) {
+        int tileK = config.tileK();
+        int tileJ = config.tileJ();
+
+        // Loop kk, jj: Tiles of B (rows kk..kk+tileK, columns jj..jj+tileJ)
+        for (int kk = 0; kk < n; kk += tileK) {
+            int kEnd = Math.min(kk + tileK, n);
+            for (int jj = 0; jj < p; jj += tileJ) {
+                int width = Math.min(jj + tileJ, p) - jj;
+
+                // Loop i: Picking row of A and C (Accessing C sequentially)
+                for (int i = 0; i < m; i++) {
+                    int rowOffsetC = cOff + i * ldc + jj; // Offset of the tile in row i of C (result)
+                    int rowOffsetA = aOff + i * lda; // Row offset for A
+                    int tileOffsetB = bOff + jj; // Offset of the tile in row 0 of B
+
+                    if (m == 1) {
+                        // A single row (matrix-vector) never reuses B, so stream through B row by row instead
+                        for (int k = kk; k < kEnd; k++) {
+                            float valA = a[rowOffsetA + k];
+                            // Optimization: If A[i][k] is zero, skip the entire row operation for this k (sparse optimization)
+                            if (valA == 0.0f) continue;
+                            axpyRow(valA, b, tileOffsetB + k * ldb, c, rowOffsetC, width);
+                        }
+                    } else {
+                        accumulateRow(a, rowOffsetA, kk, kEnd, b, tileOffsetB, ldb, c, rowOffsetC, width, config.unroll());
+                    }
                 }
+            }
+        }
+    }
 
-                // Cleanup Scalar Loop (Tail)
-                for (; j < p; j++) {
-                    result.data[rowOffsetC + j] += valA * other.data[rowOffsetB + j];
+    /**
+     * Register-blocked row kernel of the GEMM: c[cOff + j] += sum over k in [kFrom, kTo) of a[aOff + k] * b[bOff + k * ldb + j],
+     * for j in [0, len). Up to four vectors of C (the unroll factor) stay in registers during the k loop; independent
+     * accumulators hide the latency of each multiply-add.
+     */
+    private static void accumulateRow(float[] a, int aOff, int kFrom, int kTo, float[] b, int bOff, int ldb,
+                                      float[] c, int cOff, int len, int unroll) {
+        int vlen = SPECIES.length();
+        int loopBound = SPECIES.loopBound(len);
+        int j = 0;
+
+        // Loop j: Four accumulators
+        if (unroll >= 4) {
+            for (; j + 4 * vlen <= loopBound; j += 4 * vlen) {
+                var acc0 = FloatVector.fromArray(SPECIES, c, cOff + j);
+                var acc1 = FloatVector.fromArray(SPECIES, c, cOff + j + vlen);
+                var acc2 = FloatVector.fromArray(SPECIES, c, cOff + j + 2 * vlen);
+                var acc3 = FloatVector.fromArray(SPECIES, c, cOff + j + 3 * vlen);
+                for (int k = kFrom; k < kTo; k++) {
+                    float valA = a[aOff + k];
+                    if (valA == 0.0f) continue;
+                    int rowOffsetB = bOff + k * ldb + j;
+                    acc0 = FloatVector.fromArray(SPECIES, b, rowOffsetB).mul(valA).add(acc0);
+                    acc1 = FloatVector.fromArray(SPECIES, b, rowOffsetB + vlen).mul(valA).add(acc1);
+                    acc2 = FloatVector.fromArray(SPECIES, b, rowOffsetB + 2 * vlen).mul(valA).add(acc2);
+                    acc3 = FloatVector.fromArray(SPECIES, b, rowOffsetB + 3 * vlen).mul(valA).add(acc3);
                 }
+                acc0.intoArray(c, cOff + j);
+                acc1.intoArray(c, cOff + j + vlen);
+                acc2.intoArray(c, cOff + j + 2 * vlen);
+                acc3.intoArray(c, cOff + j + 3 * vlen);
             }
         }
-        return result;
+        // Loop j: Two accumulators
+        if (unroll >= 2) {
+            for (; j + 2 * vlen <= loopBound; j += 2 * vlen) {
+                var acc0 = FloatVector.fromArray(SPECIES, c, cOff + j);
+                var acc1 = FloatVector.fromArray(SPECIES, c, cOff + j + vlen);
+                for (int k = kFrom; k < kTo; k++) {
+                    float valA = a[aOff + k];
+                    if (valA == 0.0f) continue;
+                    int rowOffsetB = bOff + k * ldb + j;
+                    acc0 = FloatVector.fromArray(SPECIES, b, rowOffsetB).mul(valA).add(acc0);
+                    acc1 = FloatVector.fromArray(SPECIES, b, rowOffsetB + vlen).mul(valA).add(acc1);
+                }
+                acc0.intoArray(c, cOff + j);
+                acc1.intoArray(c, cOff + j + vlen);
+            }
+        }
+        // Loop j: Remaining full vectors, acc = acc + (vb * valA)
+        for (; j < loopBound; j += vlen) {
+            var acc = FloatVector.fromArray(SPECIES, c, cOff + j);
+            for (int k = kFrom; k < kTo; k++) {
+                float valA = a[aOff + k];
+                if (valA == 0.0f) continue;
+                acc = FloatVector.fromArray(SPECIES, b, bOff + k * ldb + j).mul(valA).add(acc);
+            }
+            acc.intoArray(c, cOff + j);
+        }
+        // Cleanup Scalar Loop (Tail)
+        for (; j < len; j++) {
+            float sum = c[cOff + j];
+            for (int k = kFrom; k < kTo; k++) {
+                float valA = a[aOff + k];
+                if (valA == 0.0f) continue;
+                sum += valA * b[bOff + k * ldb + j];
+            }
+            c[cOff + j] = sum;
+        }
+    }
+
+    /**
+     * Row kernel of the GEMM for a single row of A: c[cOff..cOff+len] += valA * b[bOff..bOff+len].
+     */
+    private static void axpyRow(float valA, float[] b, int bOff, float[] c, int cOff, int len) {
+        int loopBound = SPECIES.loopBound(len);
+        int j = 0;
+
+        // Loop j: vc = vc + (vb * valA)
+        for (; j < loopBound; j += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, b, bOff + j).mul(valA).add(FloatVector.fromArray(SPECIES, c, cOff + j)).intoArray(c, cOff + j);
+        }
+        // Cleanup Scalar Loop (Tail)
+        for (; j < len; j++) {
+            c[cOff + j] += valA * b[bOff + j];
+        }
+    }
+
+    /**
+     * Copy of this matrix, always allocated on the heap.
+     * Use it to keep a result computed inside a {@link ScratchArena} scope after the scope is closed.
+     * @return A new SimdMatrix with the same shape and elements as this one.
+     */
+    public SimdMatrix copy() {
+        return new SimdMatrix(rows, cols, Arrays.copyOf(data, rows * cols));
     }
 
     /**
@@ -100,8 +229,9 @@ public class SimdMatrix {
         if (vector.rows != 1 || vector.cols != this.cols) {
             throw new IllegalArgumentException("Shape mismatch for bias add");
         }
-        SimdMatrix result = new SimdMatrix(this.rows, this.cols);
+        SimdMatrix result = ScratchArena.allocate(this.rows, this.cols, false);
         int loopBound = SPECIES.loopBound(this.cols);
+        if (Metrics.enabled()) Metrics.kernel(Metrics.Kernel.ADD_ROW_VECTOR, data.length, Float.BYTES * (2L * data.length + cols));
 
         for (int i = 0; i < this.rows; i++) {
             int offset = i * this.cols;
@@ -128,9 +258,10 @@ public class SimdMatrix {
     public SimdMatrix elementMult(SimdMatrix other) {
         // Hadamard Product (A * B element-wise)
         if (this.rows != other.rows || this.cols != other.cols) throw new IllegalArgumentException("Shape mismatch");
-        SimdMatrix result = new SimdMatrix(this.rows, this.cols);
+        SimdMatrix result = ScratchArena.allocate(this.rows, this.cols, false);
 
         int len = this.data.length;
+        if (Metrics.enabled()) Metrics.kernel(Metrics.Kernel.ELEMENT_MULT, len, 3L * Float.BYTES * len);
         int loopBound = SPECIES.loopBound(len);
         int i = 0;
 
@@ -153,9 +284,10 @@ public class SimdMatrix {
     public SimdMatrix sub(SimdMatrix other) {
         // Subtraction (Prediction - Target)
         if (this.rows != other.rows || this.cols != other.cols) throw new IllegalArgumentException("Shape mismatch");
-        SimdMatrix result = new SimdMatrix(this.rows, this.cols);
+        SimdMatrix result = ScratchArena.allocate(this.rows, this.cols, false);
 
         int len = this.data.length;
+        if (Metrics.enabled()) Metrics.kernel(Metrics.Kernel.SUB, len, 3L * Float.BYTES * len);
         int loopBound = SPECIES.loopBound(len);
         int i = 0;
 
@@ -177,8 +309,9 @@ public class SimdMatrix {
      */
     public SimdMatrix scale(float alpha) {
         // Scalar multiplication (Weights -= lr * gradients)
-        SimdMatrix result = new SimdMatrix(this.rows, this.cols);
+        SimdMatrix result = ScratchArena.allocate(this.rows, this.cols, false);
         int len = this.data.length;
+        if (Metrics.enabled()) Metrics.kernel(Metrics.Kernel.SCALE, len, 2L * Float.BYTES * len);
         int loopBound = SPECIES.loopBound(len);
         int i = 0;
 
@@ -191,12 +324,60 @@ public class SimdMatrix {
         return result;
     }
 
+    /**
+     * Dot Product.
+     * Treats both matrices as flat vectors and computes the sum of their element-wise products in one pass,
+     * without materializing the intermediate Hadamard product.
+     * @param other The other matrix. Must have the same shape.
+     * @return The sum of the element-wise products of this and the other matrix.
+     */
+    public float dot(SimdMatrix other) {
+        if (this.rows != other.rows || this.cols != other.cols) throw new IllegalArgumentException("Shape mismatch");
+        int len = this.data.length;
+        if (Metrics.enabled()) Metrics.kernel(Metrics.Kernel.DOT, 2L * len, 2L * Float.BYTES * len);
+        int loopBound = SPECIES.loopBound(len);
+        var vSum = FloatVector.zero(SPECIES);
+        int i = 0;
+
+        for (; i < loopBound; i += SPECIES.length()) {
+            var va = FloatVector.fromArray(SPECIES, this.data, i);
+            var vb = FloatVector.fromArray(SPECIES, other.data, i);
+            vSum = va.fma(vb, vSum);
+        }
+        float sum = vSum.reduceLanes(VectorOperators.ADD);
+
+        for (; i < len; i++) sum += this.data[i] * other.data[i];
+        return sum;
+    }
+
+    /**
+     * In-place Scaled Addition (AXPY: this = this + alpha * other).
+     * Unlike the other operations, this one modifies this matrix instead of allocating a new one.
+     * @param other The matrix to add. Must have the same shape.
+     * @param alpha The scalar to multiply the other matrix with before adding it.
+     */
+    public void addScaledInPlace(SimdMatrix other, float alpha) {
+        if (this.rows != other.rows || this.cols != other.cols) throw new IllegalArgumentException("Shape mismatch");
+        int len = this.data.length;
+        if (Metrics.enabled()) Metrics.kernel(Metrics.Kernel.AXPY, 2L * len, 3L * Float.BYTES * len);
+        int loopBound = SPECIES.loopBound(len);
+        int i = 0;
+
+        for (; i < loopBound; i += SPECIES.length()) {
+            var vx = FloatVector.fromArray(SPECIES, other.data, i);
+            var vy = FloatVector.fromArray(SPECIES, this.data, i);
+            vx.mul(alpha).add(vy).intoArray(this.data, i);
+        }
+        for (; i < len; i++) this.data[i] += alpha * other.data[i];
+    }
+
     /**
      * Transpose of the matrix.
      * @return A new SimdMatrix that is the transpose of this matrix (rows and columns swapped).
      */
     public SimdMatrix transpose() {
-        SimdMatrix t = new SimdMatrix(this.cols, this.rows);
+        SimdMatrix t = ScratchArena.allocate(this.cols, this.rows, false);
+        if (Metrics.enabled()) Metrics.kernel(Metrics.Kernel.TRANSPOSE, 0, 2L * Float.BYTES * data.length);
         for (int i = 0; i < this.rows; i++) {
             for (int j = 0; j < this.cols; j++) {
                 t.data[j * this.rows + i] = this.data[i * this.cols + j];
@@ -212,6 +393,7 @@ public class SimdMatrix {
     public float sum() {
         // Sum all elements (for Loss)
         int len = this.data.length;
+        if (Metrics.enabled()) Metrics.kernel(Metrics.Kernel.SUM, len, (long) Float.BYTES * len);
         int loopBound = SPECIES.loopBound(len);
         var vSum = FloatVector.zero(SPECIES);
         int i = 0;
@@ -232,6 +414,7 @@ public class SimdMatrix {
     public float max() {
         // Max element (for Softmax stability)
         int len = this.data.length;
+        if (Metrics.enabled()) Metrics.kernel(Metrics.Kernel.MAX, len, (long) Float.BYTES * len);
         int loopBound = SPECIES.loopBound(len);
         var vMax = FloatVector.broadcast(SPECIES, -Float.MAX_VALUE);
         int i = 0;
@@ -249,12 +432,15 @@ public class SimdMatrix {
     public String shape() { return "(" + rows + ", " + cols + ")"; }
 
     public static SimdMatrix random(int rows, int cols) {
-        SimdMatrix m = new SimdMatrix(rows, cols);
-        Random r = new Random();
-        for (int i = 0; i < m.data.length; i++) {
-            m.data[i] = (float) (r.nextGaussian() * 0.1f);
-        }
-        return m;
+        return random(rows, cols, Initializers.randomSeed());
+    }
+
+    /**
+     * Reproducible random matrix: the same seed always gives the same values (see {@link Initializers}).
+     * @return A new SimdMatrix with values drawn from N(0, 0.1²).
+     */
+    public static SimdMatrix random(int rows, int cols, long seed) {
+        return Initializers.normal(new SimdMatrix(rows, cols), 0.0f, 0.1f, seed);
     }
 
     public int rows() {
@@ -0,0 +1,261 @@
+package utils;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Rank-3 tensor of shape (batch, rows, cols) stored in a single contiguous row-major array:
+ * element (b, i, j) is at {@code data[(b * rows + i) * cols + j]}, so every batch entry is a (rows x cols) matrix laid out
+ * exactly like a {@link SimdMatrix}.
+ * <p>
+ * Batched operations process all entries in one call instead of a Java loop of small {@link SimdMatrix} operations,
+ * and split the batch dimension across cores. Element-wise operations broadcast like NumPy: every dimension of the two
+ * operands must either be equal or 1, and a dimension of size 1 is repeated along the other operand.
+ */
+public class SimdTensor {
+    public final int batch;
+    public final int rows;
+    public final int cols;
+    public final float[] data;
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private enum BinaryOp { ADD, SUB, MUL }
+
+    public SimdTensor(int batch, int rows, int cols) {
+        this.batch = batch;
+        this.rows = rows;
+        this.cols = cols;
+        this.data = new float[batch * rows * cols];
+    }
+
+    public SimdTensor(int batch, int rows, int cols, float[] data) {
+        if (data.length != batch * rows * cols) {
+            throw new IllegalArgumentException("Data length " + data.length + " does not match shape (" + batch + ", " + rows + ", " + cols + ")");
+        }
+        this.batch = batch;
+        this.rows = rows;
+        this.cols = cols;
+        this.data = data;
+    }
+
+    /**
+     * Wraps a matrix as a tensor with a batch size of 1, sharing its data. Useful to broadcast one matrix (e.g. shared weights) over a batch.
+     */
+    public static SimdTensor of(SimdMatrix matrix) {
+        return new SimdTensor(1, matrix.rows, matrix.cols, matrix.data);
+    }
+
+    /**
+     * Copies matrices of the same shape into one tensor, in order.
+     * @param matrices The batch entries. Must all have the same shape.
+     */
+    public static SimdTensor stack(SimdMatrix... matrices) {
+        if (matrices.length == 0) throw new IllegalArgumentException("Cannot stack zero matrices");
+        int rows = matrices[0].rows;
+        int cols = matrices[0].cols;
+        SimdTensor result = new SimdTensor(matrices.length, rows, cols);
+        for (int b = 0; b < matrices.length; b++) {
+            if (matrices[b].rows != rows || matrices[b].cols != cols) {
+                throw new IllegalArgumentException("Shape mismatch: " + matrices[0].shape() + " vs " + matrices[b].shape());
+            }
+            System.arraycopy(matrices[b].data, 0, result.data, b * rows * cols, rows * cols);
+        }
+        return result;
+    }
+
+    /**
+     * @return A copy of batch entry b as a matrix.
+     */
+    public SimdMatrix matrix(int b) {
+        SimdMatrix m = new SimdMatrix(rows, cols);
+        System.arraycopy(data, b * rows * cols, m.data, 0, rows * cols);
+        return m;
+    }
+
+    public float get(int b, int i, int j) {
+        return data[(b * rows + i) * cols + j];
+    }
+
+    public void set(int b, int i, int j, float value) {
+        data[(b * rows + i) * cols + j] = value;
+    }
+
+    /**
+     * Batched Matrix Multiplication (C[b] = A[b] * B[b] for every batch entry b).
+     * If one of the operands has a batch size of 1, its single matrix is multiplied with every entry of the other one.
+     * Each product uses the same kernel as {@link SimdMatrix#matmul(SimdMatrix)}, and the batch entries are computed in
+     * parallel when the total work reaches the parallel threshold of the active {@link KernelProfile}.
+     * @param other The tensor to multiply with. Must have shape (batch of this or 1, columns of this, any).
+     * @return A new tensor of shape (batch, rows of this, columns of other).
+     */
+    public SimdTensor bmm(SimdTensor other) {
+        if (this.cols != other.rows) {
+            throw new IllegalArgumentException("Shape mismatch: " + shape() + " vs " + other.shape());
+        }
+        int batch = broadcastDim(this.batch, other.batch, other);
+        int m = this.rows;
+        int n = this.cols;
+        int p = other.cols;
+        SimdTensor result = new SimdTensor(batch, m, p, ScratchArena.buffer(batch * m * p, true)); // The kernel accumulates into C
+
+        // A batch entry of size 1 is reused for every entry of the other operand
+        int aStride = this.batch == 1 ? 0 : m * n;
+        int bStride = other.batch == 1 ? 0 : n * p;
+        int cStride = m * p;
+        KernelConfig config = KernelProfile.active().configFor(m, n, p);
+        // The batch behaves like a product with batch * m rows when deciding whether to go parallel
+        long threshold = KernelProfile.active().configFor(batch * m, n, p).parallelThreshold();
+
+        if ((long) batch * m * n * p >= threshold && batch > 1) {
+            // Split the batch into one chunk per worker. Each task writes a disjoint range of entries, so no synchronization is needed.
+            int chunks = Math.min(batch, ForkJoinPool.getCommonPoolParallelism() * 4);
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                int from = (int) ((long) batch * c / chunks);
+                int to = (int) ((long) batch * (c + 1) / chunks);
+                for (int b = from; b < to; b++) {
+                    SimdMatrix.gemm(this.data, b * aStride, n, other.data, b * bStride, p, result.data, b * cStride, p, m, n, p, config);
+                }
+            });
+        } else {
+            for (int b = 0; b < batch; b++) {
+                SimdMatrix.gemm(this.data, b * aStride, n, other.data, b * bStride, p, result.data, b * cStride, p, m, n, p, config);
+            }
+        }
+
+        if (Metrics.enabled()) {
+            Metrics.kernel(Metrics.Kernel.BMM, 2L * batch * m * n * p,
+                    Float.BYTES * ((long) this.data.length + other.data.length + result.data.length));
+        }
+        return result;
+    }
+
+    /**
+     * Element-wise Addition with broadcasting.
+     * @param other The tensor to add. Every dimension must be equal to the one of this tensor or 1.
+     * @return A new tensor with the broadcast shape.
+     */
+    public SimdTensor add(SimdTensor other) {
+        return broadcast(other, BinaryOp.ADD);
+    }
+
+    /**
+     * Element-wise Subtraction (this - other) with broadcasting.
+     * @param other The tensor to subtract. Every dimension must be equal to the one of this tensor or 1.
+     * @return A new tensor with the broadcast shape.
+     */
+    public SimdTensor sub(SimdTensor other) {
+        return broadcast(other, BinaryOp.SUB);
+    }
+
+    /**
+     * Element-wise Multiplication (Hadamard Product) with broadcasting.
+     * @param other The tensor to multiply with. Every dimension must be equal to the one of this tensor or 1.
+     * @return A new tensor with the broadcast shape.
+     */
+    public SimdTensor mul(SimdTensor other) {
+        return broadcast(other, BinaryOp.MUL);
+    }
+
+    private SimdTensor broadcast(SimdTensor other, BinaryOp op) {
+        int batch = broadcastDim(this.batch, other.batch, other);
+        int rows = broadcastDim(this.rows, other.rows, other);
+        int cols = broadcastDim(this.cols, other.cols, other);
+        SimdTensor result = new SimdTensor(batch, rows, cols, ScratchArena.buffer(batch * rows * cols, false));
+
+        // Same shape: the whole buffer is one long row
+        if (this.batch == other.batch && this.rows == other.rows && this.cols == other.cols) {
+            rowOp(op, this.data, 0, false, other.data, 0, false, result.data, 0, result.data.length);
+            return result;
+        }
+
+        // Loop b, i: One output row at a time. A dimension of size 1 does not advance its offset (stride 0).
+        for (int b = 0; b < batch; b++) {
+            for (int i = 0; i < rows; i++) {
+                int xOff = ((this.batch == 1 ? 0 : b) * this.rows + (this.rows == 1 ? 0 : i)) * this.cols;
+                int yOff = ((other.batch == 1 ? 0 : b) * other.rows + (other.rows == 1 ? 0 : i)) * other.cols;
+                rowOp(op, this.data, xOff, this.cols == 1 && cols > 1, other.data, yOff, other.cols == 1 && cols > 1,
+                        result.data, (b * rows + i) * cols, cols);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Applies op to one output row: out[j] = x[j] op y[j], where an operand flagged as scalar is broadcast along the row.
+     */
+    private static void rowOp(BinaryOp op, float[] x, int xOff, boolean xScalar, float[] y, int yOff, boolean yScalar,
+                              float[] out, int outOff, int len) {
+        int loopBound = SPECIES.loopBound(len);
+        int j = 0;
+        if (xScalar && yScalar) {
+            float value = apply(op, x[xOff], y[yOff]);
+            for (; j < len; j++) out[outOff + j] = value;
+        } else if (xScalar) {
+            var vx = FloatVector.broadcast(SPECIES, x[xOff]);
+            for (; j < loopBound; j += SPECIES.length()) {
+                apply(op, vx, FloatVector.fromArray(SPECIES, y, yOff + j)).intoArray(out, outOff + j);
+            }
+            for (; j < len; j++) out[outOff + j] = apply(op, x[xOff], y[yOff + j]);
+        } else if (yScalar) {
+            var vy = FloatVector.broadcast(SPECIES, y[yOff]);
+            for (; j < loopBound; j += SPECIES.length()) {
+                apply(op, FloatVector.fromArray(SPECIES, x, xOff + j), vy).intoArray(out, outOff + j);
+            }
+            for (; j < len; j++) out[outOff + j] = apply(op, x[xOff + j], y[yOff]);
+        } else {
+            for (; j < loopBound; j += SPECIES.length()) {
+                var vx = FloatVector.fromArray(SPECIES, x, xOff + j);
+                var vy = FloatVector.fromArray(SPECIES, y, yOff + j);
+                apply(op, vx, vy).intoArray(out, outOff + j);
+            }
+            for (; j < len; j++) out[outOff + j] = apply(op, x[xOff + j], y[yOff + j]);
+        }
+    }
+
+    private static FloatVector apply(BinaryOp op, FloatVector x, FloatVector y) {
+        return switch (op) {
+            case ADD -> x.add(y);
+            case SUB -> x.sub(y);
+            case MUL -> x.mul(y);
+        };
+    }
+
+    private static float apply(BinaryOp op, float x, float y) {
+        return switch (op) {
+            case ADD -> x + y;
+            case SUB -> x - y;
+            case MUL -> x * y;
+        };
+    }
+
+    private int broadcastDim(int a, int b, SimdTensor other) {
+        if (a != b && a != 1 && b != 1) {
+            throw new IllegalArgumentException("Shape mismatch: " + shape() + " vs " + other.shape());
+        }
+        return Math.max(a, b);
+    }
+
+    public String shape() { return "(" + batch + ", " + rows + ", " + cols + ")"; }
+
+    public static SimdTensor random(int batch, int rows, int cols) {
+        SimdTensor t = new SimdTensor(batch, rows, cols);
+        Initializers.normal(t.data, 0.0f, 0.1f, Initializers.randomSeed());
+        return t;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Tensor ").append(shape()).append("\n");
+        int bMax = Math.min(batch, 2);
+        for (int b = 0; b < bMax; b++) {
+            sb.append("[").append(b).append("] ").append(matrix(b));
+        }
+        if (batch > bMax) sb.append("...\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,376 @@
+package utils;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Fast matrix multiplication with the Strassen-Winograd recursion: 7 half-size products and 15 additions per level
+ * instead of 8 products, i.e. O(n^2.81) instead of O(n^3). Below a cutoff size the recursion falls back to the
+ * {@link SimdMatrix} GEMM kernel, which is faster on small blocks.
+ * <p>
+ * Matrices whose dimensions are not divisible by 2^depth are zero-padded once at the top. All temporaries (the padded
+ * operands and the S, T and P blocks of every level) are taken from a single workspace array sized up front, so the
+ * recursion itself does not allocate matrices. The seven products of the top level run in parallel on the fork/join
+ * common pool, each with its own workspace for the levels below. Workspaces are cached per thread and only grown when
+ * a larger product needs more, so repeated products of the same size do not allocate them again; the result is taken
+ * from the active {@link ScratchArena}, if any.
+ * <p>
+ * Strassen's algorithm is less accurate than the classical kernel (the additions mix large and small terms), so it is a
+ * separate opt-in path rather than part of {@link SimdMatrix#matmul(SimdMatrix)}. Use {@link #compare} to measure the
+ * accuracy loss for a given workload.
+ */
+public final class Strassen {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * Cutoff used when the active {@link KernelProfile} was not tuned for Strassen (see {@link Autotuner#tuneStrassenCutoff(int)}).
+     */
+    public static final int DEFAULT_CUTOFF = 512;
+
+    private Strassen() {
+    }
+
+    /**
+     * Multiplies two matrices with the cutoff of the active {@link KernelProfile}.
+     */
+    public static SimdMatrix multiply(SimdMatrix a, SimdMatrix b) {
+        return multiply(a, b, KernelProfile.active().strassenCutoff());
+    }
+
+    /**
+     * Multiplies two matrices (C = A * B).
+     * @param cutoff The recursion stops once the smallest dimension of a block would drop below this size.
+     *               Products whose smallest dimension is below 2 * cutoff use the classical kernel directly.
+     * @return A new SimdMatrix that is the result of multiplying a with b.
+     */
+    public static SimdMatrix multiply(SimdMatrix a, SimdMatrix b, int cutoff) {
+        if (cutoff < 1) throw new IllegalArgumentException("Cutoff must be positive: " + cutoff);
+        int depth = depth(a.rows, a.cols, b.cols, cutoff);
+        int unit = 1 << depth;
+        KernelConfig leaf = KernelProfile.active().configFor(roundUp(a.rows, unit) / unit, roundUp(a.cols, unit) / unit, roundUp(b.cols, unit) / unit);
+        return multiply(a, b, cutoff, leaf);
+    }
+
+    /**
+     * Multiplies two matrices (C = A * B) with an explicit kernel configuration for the classical products at the leaves
+     * of the recursion (or for the whole product if it is too small for Strassen), independent of the active {@link KernelProfile}.
+     * @param cutoff The recursion stops once the smallest dimension of a block would drop below this size.
+     * @param leaf The kernel parameters of the classical products.
+     * @return A new SimdMatrix that is the result of multiplying a with b.
+     */
+    public static SimdMatrix multiply(SimdMatrix a, SimdMatrix b, int cutoff, KernelConfig leaf) {
+        if (a.cols != b.rows) {
+            throw new IllegalArgumentException("Shape mismatch: " + a.shape() + " vs " + b.shape());
+        }
+        if (cutoff < 1) throw new IllegalArgumentException("Cutoff must be positive: " + cutoff);
+        int m = a.rows;
+        int n = a.cols;
+        int p = b.cols;
+        int depth = depth(m, n, p, cutoff);
+        if (depth == 0) return a.matmul(b, leaf);
+
+        // Pad every dimension to a multiple of 2^depth so that each level splits evenly
+        int unit = 1 << depth;
+        int pm = roundUp(m, unit), pn = roundUp(n, unit), pp = roundUp(p, unit);
+        boolean padded = pm != m || pn != n || pp != p;
+
+        Workspace ws = Workspace.acquire((padded ? (long) pm * pn + (long) pn * pp + (long) pm * pp : 0) + levelSize(pm, pn, pp));
+        Block blockA = new Block(a.data, 0, n, m, n);
+        Block blockB = new Block(b.data, 0, p, n, p);
+        SimdMatrix result = ScratchArena.allocate(m, p, false); // Every element is written below
+        Block blockC = new Block(result.data, 0, p, m, p);
+        try {
+            if (padded) {
+                blockA = ws.copyPadded(blockA, pm, pn);
+                blockB = ws.copyPadded(blockB, pn, pp);
+                blockC = ws.block(pm, pp);
+            }
+
+            multiplyTopLevel(blockA, blockB, blockC, depth, ws, leaf);
+
+            if (padded) {
+                for (int i = 0; i < m; i++) {
+                    System.arraycopy(blockC.data, blockC.offset + i * blockC.ld, result.data, i * p, p);
+                }
+            }
+        } finally {
+            ws.release();
+        }
+        if (Metrics.enabled()) {
+            Metrics.kernel(Metrics.Kernel.STRASSEN, 2L * m * n * p, Float.BYTES * ((long) m * n + (long) n * p + (long) m * p));
+        }
+        return result;
+    }
+
+    // Number of recursion levels such that the smallest block dimension stays at least the cutoff
+    static int depth(int m, int n, int p, int cutoff) {
+        int min = Math.min(m, Math.min(n, p));
+        int depth = 0;
+        while ((min >> (depth + 1)) >= cutoff) depth++;
+        return depth;
+    }
+
+    private static int roundUp(int value, int unit) {
+        return (value + unit - 1) / unit * unit;
+    }
+
+    // Floats needed by the temporaries of one level: S1..S4 (m/2 x n/2), T1..T4 (n/2 x p/2), P1..P7 (m/2 x p/2)
+    private static long levelSize(int m, int n, int p) {
+        long m2 = m / 2, n2 = n / 2, p2 = p / 2;
+        return 4 * m2 * n2 + 4 * n2 * p2 + 7 * m2 * p2;
+    }
+
+    // Floats needed by a sequential recursion of the given depth
+    private static long recursionSize(int m, int n, int p, int depth) {
+        long size = 0;
+        for (int d = 0; d < depth; d++) {
+            size += levelSize(m, n, p);
+            m /= 2;
+            n /= 2;
+            p /= 2;
+        }
+        return size;
+    }
+
+    /**
+     * The top level: the seven products are independent and run in parallel, each with its own workspace.
+     */
+    private static void multiplyTopLevel(Block a, Block b, Block c, int depth, Workspace ws, KernelConfig leaf) {
+        Level level = new Level(a, b, c, ws);
+        level.prepare();
+        long subSize = recursionSize(a.rows / 2, a.cols / 2, b.cols / 2, depth - 1);
+        IntStream.range(0, 7).parallel().forEach(i -> {
+            Workspace own = Workspace.acquire(subSize);
+            try {
+                multiply(level.left[i], level.right[i], level.products[i], depth - 1, own, leaf);
+            } finally {
+                own.release();
+            }
+        });
+        level.combine();
+    }
+
+    /**
+     * Sequential recursion: C = A * B, with all temporaries taken from the workspace.
+     */
+    private static void multiply(Block a, Block b, Block c, int depth, Workspace ws, KernelConfig leaf) {
+        if (depth == 0) {
+            c.zero();
+            SimdMatrix.gemm(a.data, a.offset, a.ld, b.data, b.offset, b.ld, c.data, c.offset, c.ld, a.rows, a.cols, b.cols, leaf);
+            return;
+        }
+        int mark = ws.mark();
+        Level level = new Level(a, b, c, ws);
+        level.prepare();
+        for (int i = 0; i < 7; i++) {
+            multiply(level.left[i], level.right[i], level.products[i], depth - 1, ws, leaf);
+        }
+        level.combine();
+        ws.release(mark);
+    }
+
+    /**
+     * One level of the Strassen-Winograd schedule:
+     * <pre>
+     * S1 = A21 + A22   S2 = S1 - A11   S3 = A11 - A21   S4 = A12 - S2
+     * T1 = B12 - B11   T2 = B22 - T1   T3 = B22 - B12   T4 = T2 - B21
+     * P1 = A11 B11   P2 = A12 B21   P3 = S4 B22   P4 = A22 T4   P5 = S1 T1   P6 = S2 T2   P7 = S3 T3
+     * C11 = P1 + P2   U2 = P1 + P6   U3 = U2 + P7
+     * C12 = U2 + P5 + P3   C21 = U3 - P4   C22 = U3 + P5
+     * </pre>
+     */
+    private static final class Level {
+        final Block a11, a12, a21, a22, b11, b12, b21, b22, c11, c12, c21, c22;
+        final Block s1, s2, s3, s4, t1, t2, t3, t4;
+        final Block[] products = new Block[7];
+        final Block[] left;
+        final Block[] right;
+
+        Level(Block a, Block b, Block c, Workspace ws) {
+            a11 = a.quadrant(0, 0); a12 = a.quadrant(0, 1); a21 = a.quadrant(1, 0); a22 = a.quadrant(1, 1);
+            b11 = b.quadrant(0, 0); b12 = b.quadrant(0, 1); b21 = b.quadrant(1, 0); b22 = b.quadrant(1, 1);
+            c11 = c.quadrant(0, 0); c12 = c.quadrant(0, 1); c21 = c.quadrant(1, 0); c22 = c.quadrant(1, 1);
+            s1 = ws.block(a11.rows, a11.cols); s2 = ws.block(a11.rows, a11.cols);
+            s3 = ws.block(a11.rows, a11.cols); s4 = ws.block(a11.rows, a11.cols);
+            t1 = ws.block(b11.rows, b11.cols); t2 = ws.block(b11.rows, b11.cols);
+            t3 = ws.block(b11.rows, b11.cols); t4 = ws.block(b11.rows, b11.cols);
+            for (int i = 0; i < 7; i++) products[i] = ws.block(c11.rows, c11.cols);
+            left = new Block[]{a11, a12, s4, a22, s1, s2, s3};
+            right = new Block[]{b11, b21, b22, t4, t1, t2, t3};
+        }
+
+        void prepare() {
+            add(a21, a22, s1);
+            sub(s1, a11, s2);
+            sub(a11, a21, s3);
+            sub(a12, s2, s4);
+            sub(b12, b11, t1);
+            sub(b22, t1, t2);
+            sub(b22, b12, t3);
+            sub(t2, b21, t4);
+        }
+
+        void combine() {
+            Block p1 = products[0], p2 = products[1], p3 = products[2], p4 = products[3];
+            Block p5 = products[4], p6 = products[5], p7 = products[6];
+            add(p1, p2, c11);
+            add(p1, p6, p6); // U2
+            add(p6, p7, p7); // U3
+            add(p6, p5, c12); // U4
+            add(c12, p3, c12); // U5
+            sub(p7, p4, c21); // U6
+            add(p7, p5, c22); // U7
+        }
+    }
+
+    // z = x + y, row by row (z may alias x or y)
+    private static void add(Block x, Block y, Block z) {
+        for (int i = 0; i < z.rows; i++) {
+            int xo = x.offset + i * x.ld, yo = y.offset + i * y.ld, zo = z.offset + i * z.ld;
+            int loopBound = SPECIES.loopBound(z.cols);
+            int j = 0;
+            for (; j < loopBound; j += SPECIES.length()) {
+                var vx = FloatVector.fromArray(SPECIES, x.data, xo + j);
+                var vy = FloatVector.fromArray(SPECIES, y.data, yo + j);
+                vx.add(vy).intoArray(z.data, zo + j);
+            }
+            for (; j < z.cols; j++) z.data[zo + j] = x.data[xo + j] + y.data[yo + j];
+        }
+    }
+
+    // z = x - y, row by row (z may alias x or y)
+    private static void sub(Block x, Block y, Block z) {
+        for (int i = 0; i < z.rows; i++) {
+            int xo = x.offset + i * x.ld, yo = y.offset + i * y.ld, zo = z.offset + i * z.ld;
+            int loopBound = SPECIES.loopBound(z.cols);
+            int j = 0;
+            for (; j < loopBound; j += SPECIES.length()) {
+                var vx = FloatVector.fromArray(SPECIES, x.data, xo + j);
+                var vy = FloatVector.fromArray(SPECIES, y.data, yo + j);
+                vx.sub(vy).intoArray(z.data, zo + j);
+            }
+            for (; j < z.cols; j++) z.data[zo + j] = x.data[xo + j] - y.data[yo + j];
+        }
+    }
+
+    /**
+     * A (rows x cols) row-major view into a larger array, starting at offset with row stride ld.
+     */
+    private record Block(float[] data, int offset, int ld, int rows, int cols) {
+        Block quadrant(int r, int c) {
+            int hr = rows / 2, hc = cols / 2;
+            return new Block(data, offset + r * hr * ld + c * hc, ld, hr, hc);
+        }
+
+        void zero() {
+            for (int i = 0; i < rows; i++) {
+                Arrays.fill(data, offset + i * ld, offset + i * ld + cols, 0.0f);
+            }
+        }
+    }
+
+    /**
+     * Stack allocator over one array: blocks are handed out in order and released back to a mark.
+     * <p>
+     * The array is cached per thread between calls. It is softly referenced, so that the workspace of a one-off large
+     * product can be reclaimed under memory pressure, and it is taken out of the cache while in use: a top-level task
+     * stolen by a thread that is waiting inside a parallel GEMM kernel gets a workspace of its own instead of sharing it.
+     * Blocks are not zeroed, every kernel writing to them overwrites all their elements.
+     */
+    private static final class Workspace {
+        private static final ThreadLocal<SoftReference<float[]>> CACHE = new ThreadLocal<>();
+
+        private final SoftReference<float[]> ref;
+        private final float[] data;
+        private int top;
+
+        private Workspace(SoftReference<float[]> ref, float[] data) {
+            this.ref = ref;
+            this.data = data;
+        }
+
+        static Workspace acquire(long size) {
+            if (size > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Strassen workspace too large: " + size);
+            SoftReference<float[]> cached = CACHE.get();
+            float[] data = cached == null ? null : cached.get();
+            if (data == null || data.length < size) {
+                data = new float[(int) size];
+                return new Workspace(new SoftReference<>(data), data);
+            }
+            CACHE.remove();
+            return new Workspace(cached, data);
+        }
+
+        /**
+         * Hands the array back to the cache of the current thread, unless it already holds a larger one.
+         */
+        void release() {
+            SoftReference<float[]> cached = CACHE.get();
+            float[] current = cached == null ? null : cached.get();
+            if (current == null || current.length < data.length) CACHE.set(ref);
+        }
+
+        Block block(int rows, int cols) {
+            Block block = new Block(data, top, cols, rows, cols);
+            top += rows * cols;
+            return block;
+        }
+
+        Block copyPadded(Block source, int rows, int cols) {
+            Block block = block(rows, cols);
+            for (int i = 0; i < source.rows; i++) {
+                int row = block.offset + i * cols;
+                System.arraycopy(source.data, source.offset + i * source.ld, data, row, source.cols);
+                Arrays.fill(data, row + source.cols, row + cols, 0.0f); // The array is reused, so the padding must be cleared
+            }
+            Arrays.fill(data, block.offset + source.rows * cols, block.offset + rows * cols, 0.0f);
+            return block;
+        }
+
+        int mark() {
+            return top;
+        }
+
+        void release(int mark) {
+            top = mark;
+        }
+    }
+
+    /**
+     * Accuracy and speed of the Strassen path compared to the classical kernel.
+     * @param maxAbsError Largest absolute difference between the two results.
+     * @param maxRelError maxAbsError relative to the largest absolute value of the classical result.
+     * @param classicalNanos Time of the classical {@link SimdMatrix#matmul(SimdMatrix)}.
+     * @param strassenNanos Time of {@link #multiply(SimdMatrix, SimdMatrix, int)}.
+     */
+    public record Accuracy(double maxAbsError, double maxRelError, long classicalNanos, long strassenNanos) {
+        @Override
+        public String toString() {
+            return String.format("max abs error %.3e, max rel error %.3e, classical %.3f ms, strassen %.3f ms (%.2fx)",
+                    maxAbsError, maxRelError, classicalNanos / 1e6, strassenNanos / 1e6, (double) classicalNanos / strassenNanos);
+        }
+    }
+
+    /**
+     * Multiplies a and b with both the classical kernel and Strassen, and reports the difference.
+     */
+    public static Accuracy compare(SimdMatrix a, SimdMatrix b, int cutoff) {
+        long start = System.nanoTime();
+        SimdMatrix classical = a.matmul(b);
+        long classicalNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        SimdMatrix fast = multiply(a, b, cutoff);
+        long strassenNanos = System.nanoTime() - start;
+
+        double maxAbsError = 0, maxValue = 0;
+        for (int i = 0; i < classical.data.length; i++) {
+            maxAbsError = Math.max(maxAbsError, Math.abs(classical.data[i] - fast.data[i]));
+            maxValue = Math.max(maxValue, Math.abs(classical.data[i]));
+        }
+        return new Accuracy(maxAbsError, maxValue == 0 ? 0 : maxAbsError / maxValue, classicalNanos, strassenNanos);
+    }
+}
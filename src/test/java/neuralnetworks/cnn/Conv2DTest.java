@@ -0,0 +1,156 @@
+package neuralnetworks.cnn;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Conv2D (im2col + SIMD GEMM) Tests")
+public class Conv2DTest {
+
+    /**
+     * Helper method: Naive Convolution (7 nested loops: n, oc, y, x, c, ky, kx) on NCHW data.
+     * Used as the "Ground Truth" to verify the im2col implementation.
+     */
+    private float[] naiveConv(FeatureMap in, Conv2D conv, int k, int stride, int padding, int dilation) {
+        int oc = conv.weights().rows;
+        int oh = conv.outputHeight(in.height);
+        int ow = conv.outputWidth(in.width);
+        float[] out = new float[in.batch * oc * oh * ow];
+        for (int n = 0; n < in.batch; n++) {
+            for (int o = 0; o < oc; o++) {
+                for (int y = 0; y < oh; y++) {
+                    for (int x = 0; x < ow; x++) {
+                        float sum = conv.bias().data[o];
+                        for (int c = 0; c < in.channels; c++) {
+                            for (int ky = 0; ky < k; ky++) {
+                                for (int kx = 0; kx < k; kx++) {
+                                    int iy = y * stride - padding + ky * dilation;
+                                    int ix = x * stride - padding + kx * dilation;
+                                    if (iy < 0 || iy >= in.height || ix < 0 || ix >= in.width) continue;
+                                    sum += in.get(n, c, iy, ix) * conv.weights().data[o * conv.weights().cols + (c * k + ky) * k + kx];
+                                }
+                            }
+                        }
+                        out[((n * oc + o) * oh + y) * ow + x] = sum;
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private void assertClose(float[] expected, FeatureMap actual, float epsilon) {
+        FeatureMap nchw = actual.toLayout(FeatureMap.Layout.NCHW);
+        for (int i = 0; i < expected.length; i++) {
+            Assertions.assertEquals(expected[i], nchw.data[i], epsilon, "Mismatch at index " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("Forward pass matches the naive convolution for stride, padding and dilation in both layouts")
+    void testForwardMatchesNaive() {
+        int[][] configs = {{3, 1, 0, 1}, {3, 2, 1, 1}, {3, 1, 2, 2}, {1, 1, 0, 1}, {5, 3, 2, 1}};
+        for (int[] cfg : configs) {
+            int k = cfg[0], stride = cfg[1], padding = cfg[2], dilation = cfg[3];
+            Conv2D conv = new Conv2D(3, 5, k, stride, padding, dilation);
+            for (int i = 0; i < 5; i++) conv.bias().data[i] = 0.1f * i;
+            FeatureMap input = FeatureMap.random(2, 3, 11, 13, FeatureMap.Layout.NCHW);
+            float[] expected = naiveConv(input, conv, k, stride, padding, dilation);
+
+            FeatureMap nchw = conv.forward(input);
+            FeatureMap nhwc = conv.forward(input.toLayout(FeatureMap.Layout.NHWC));
+            Assertions.assertEquals(FeatureMap.Layout.NHWC, nhwc.layout);
+            Assertions.assertEquals(conv.outputHeight(11), nchw.height);
+            Assertions.assertEquals(conv.outputWidth(13), nchw.width);
+            assertClose(expected, nchw, 1e-4f);
+            assertClose(expected, nhwc, 1e-4f);
+        }
+    }
+
+    @Test
+    @DisplayName("Backward pass matches numerical gradients in both layouts")
+    void testBackwardMatchesNumericalGradient() {
+        for (FeatureMap.Layout layout : FeatureMap.Layout.values()) {
+            Conv2D conv = new Conv2D(2, 3, 3, 2, 1, 1);
+            FeatureMap input = FeatureMap.random(2, 2, 7, 6, layout);
+            FeatureMap output = conv.forward(input);
+            // Loss = sum(output * g) for a fixed random g, so dLoss/dOutput = g
+            FeatureMap g = FeatureMap.random(output.batch, output.channels, output.height, output.width, layout);
+
+            conv.zeroGrad();
+            FeatureMap gradInput = conv.backward(input, g);
+
+            float h = 1e-2f;
+            for (int i = 0; i < input.data.length; i += 5) {
+                float saved = input.data[i];
+                input.data[i] = saved + h;
+                float plus = loss(conv.forward(input), g);
+                input.data[i] = saved - h;
+                float minus = loss(conv.forward(input), g);
+                input.data[i] = saved;
+                Assertions.assertEquals((plus - minus) / (2 * h), gradInput.data[i], 2e-2f, layout + " input gradient " + i);
+            }
+            float[] w = conv.weights().data;
+            for (int i = 0; i < w.length; i += 3) {
+                float saved = w[i];
+                w[i] = saved + h;
+                float plus = loss(conv.forward(input), g);
+                w[i] = saved - h;
+                float minus = loss(conv.forward(input), g);
+                w[i] = saved;
+                Assertions.assertEquals((plus - minus) / (2 * h), conv.gradWeights().data[i], 2e-2f, layout + " weight gradient " + i);
+            }
+            float biasGrad = 0.0f;
+            for (int n = 0; n < g.batch; n++) {
+                for (int y = 0; y < g.height; y++) {
+                    for (int x = 0; x < g.width; x++) biasGrad += g.get(n, 1, y, x);
+                }
+            }
+            Assertions.assertEquals(biasGrad, conv.gradBias().data[1], 1e-3f);
+        }
+    }
+
+    private float loss(FeatureMap output, FeatureMap g) {
+        float sum = 0.0f;
+        for (int i = 0; i < output.data.length; i++) sum += output.data[i] * g.data[i];
+        return sum;
+    }
+
+    @Test
+    @DisplayName("Benchmark im2col convolution against the naive 7-loop convolution")
+    void testConvolutionThroughput() {
+        int batch = 8, inChannels = 32, outChannels = 64, size = 32, k = 3;
+        Conv2D conv = new Conv2D(inChannels, outChannels, k, 1, 1, 1);
+        FeatureMap input = FeatureMap.random(batch, inChannels, size, size, FeatureMap.Layout.NCHW);
+        FeatureMap inputNhwc = input.toLayout(FeatureMap.Layout.NHWC);
+
+        // Warm up
+        for (int i = 0; i < 3; i++) {
+            conv.forward(input);
+            conv.forward(inputNhwc);
+        }
+
+        long startNchw = System.nanoTime();
+        FeatureMap nchw = conv.forward(input);
+        long endNchw = System.nanoTime();
+
+        long startNhwc = System.nanoTime();
+        FeatureMap nhwc = conv.forward(inputNhwc);
+        long endNhwc = System.nanoTime();
+
+        long startNaive = System.nanoTime();
+        float[] expected = naiveConv(input, conv, k, 1, 1, 1);
+        long endNaive = System.nanoTime();
+
+        assertClose(expected, nchw, 1e-3f);
+        assertClose(expected, nhwc, 1e-3f);
+
+        double flops = 2.0 * batch * outChannels * size * size * inChannels * k * k;
+        System.out.println("--- Test Passed ---");
+        System.out.printf("Conv: %d x [%d x %d x %d] * %d filters of %dx%d%n", batch, inChannels, size, size, outChannels, k, k);
+        System.out.printf("im2col NCHW Time: %.3f ms (%.2f GFLOP/s)%n", (endNchw - startNchw) / 1e6, flops / (endNchw - startNchw));
+        System.out.printf("im2col NHWC Time: %.3f ms (%.2f GFLOP/s)%n", (endNhwc - startNhwc) / 1e6, flops / (endNhwc - startNhwc));
+        System.out.printf("Naive Time:       %.3f ms (%.2f GFLOP/s)%n", (endNaive - startNaive) / 1e6, flops / (endNaive - startNaive));
+        System.out.printf("Speedup:          %.1fx%n", (double) (endNaive - startNaive) / (endNchw - startNchw));
+    }
+}
@@ -0,0 +1,56 @@
+package neuralnetworks.cnn;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Max/Average Pooling Tests")
+public class PoolingTest {
+
+    private float naiveWindow(FeatureMap in, int n, int c, int y, int x, int k, int stride, boolean max) {
+        float acc = max ? Float.NEGATIVE_INFINITY : 0.0f;
+        for (int ky = 0; ky < k; ky++) {
+            for (int kx = 0; kx < k; kx++) {
+                float v = in.get(n, c, y * stride + ky, x * stride + kx);
+                acc = max ? Math.max(acc, v) : acc + v;
+            }
+        }
+        return max ? acc : acc / (k * k);
+    }
+
+    @Test
+    @DisplayName("Pooling matches the naive window reduction for both layouts and strides")
+    void testPoolingMatchesNaive() {
+        int[][] configs = {{2, 2}, {3, 1}, {3, 2}, {1, 1}};
+        for (FeatureMap.Layout layout : FeatureMap.Layout.values()) {
+            // 37 channels and 41 columns so that both the vector and the tail loops run
+            FeatureMap input = FeatureMap.random(2, 37, 23, 41, layout);
+            for (int[] cfg : configs) {
+                int k = cfg[0], stride = cfg[1];
+                FeatureMap maxOut = Pooling.maxPool(input, k, stride);
+                FeatureMap avgOut = Pooling.avgPool(input, k, stride);
+                Assertions.assertEquals(layout, maxOut.layout);
+                Assertions.assertEquals((23 - k) / stride + 1, maxOut.height);
+                Assertions.assertEquals((41 - k) / stride + 1, maxOut.width);
+                for (int n = 0; n < 2; n++) {
+                    for (int c = 0; c < 37; c++) {
+                        for (int y = 0; y < maxOut.height; y++) {
+                            for (int x = 0; x < maxOut.width; x++) {
+                                Assertions.assertEquals(naiveWindow(input, n, c, y, x, k, stride, true), maxOut.get(n, c, y, x));
+                                Assertions.assertEquals(naiveWindow(input, n, c, y, x, k, stride, false), avgOut.get(n, c, y, x), 1e-5f);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Invalid pooling windows are rejected")
+    void testInvalidWindow() {
+        FeatureMap input = FeatureMap.random(1, 1, 4, 4, FeatureMap.Layout.NCHW);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Pooling.maxPool(input, 5, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Pooling.avgPool(input, 2, 0));
+    }
+}
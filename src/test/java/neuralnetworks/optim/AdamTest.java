@@ -0,0 +1,96 @@
+package neuralnetworks.optim;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import utils.SimdMatrix;
+
+@DisplayName("Adam Optimizer Tests")
+public class AdamTest {
+
+    /**
+     * Helper method: scalar Adam/AdamW step in double precision, used as the "Ground Truth" for the fused kernel.
+     */
+    private void referenceStep(double[] p, double[] m, double[] v, float[] g, int t, double lr, double weightDecay, boolean decoupled) {
+        double beta1 = 0.9, beta2 = 0.999, epsilon = 1e-8;
+        for (int i = 0; i < p.length; i++) {
+            double gi = g[i] + (decoupled ? 0 : weightDecay * p[i]);
+            if (decoupled) p[i] -= lr * weightDecay * p[i];
+            m[i] = beta1 * m[i] + (1 - beta1) * gi;
+            v[i] = beta2 * v[i] + (1 - beta2) * gi * gi;
+            double mHat = m[i] / (1 - Math.pow(beta1, t));
+            double vHat = v[i] / (1 - Math.pow(beta2, t));
+            p[i] -= lr * mHat / (Math.sqrt(vHat) + epsilon);
+        }
+    }
+
+    @Test
+    @DisplayName("Adam and AdamW steps match the scalar reference")
+    void testMatchesReference() {
+        for (boolean decoupled : new boolean[]{false, true}) {
+            Adam adam = new Adam(0.01f, 0.9f, 0.999f, 1e-8f, 0.05f, decoupled);
+            SimdMatrix params = SimdMatrix.random(13, 81, 2); // 1053 elements, so that the tail loop runs
+            double[] expected = new double[params.data.length];
+            for (int i = 0; i < expected.length; i++) expected[i] = params.data[i];
+            double[] m = new double[expected.length];
+            double[] v = new double[expected.length];
+
+            for (int t = 1; t <= 10; t++) {
+                SimdMatrix grads = SimdMatrix.random(13, 81, 200 + t);
+                adam.step(params, grads);
+                referenceStep(expected, m, v, grads.data, t, 0.01, 0.05, decoupled);
+            }
+            for (int i = 0; i < expected.length; i++) {
+                Assertions.assertEquals(expected[i], params.data[i], 1e-5, "Mismatch at " + i + (decoupled ? " (AdamW)" : " (Adam)"));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Every parameter matrix keeps its own moments, the first step moves each weight by about the learning rate")
+    void testStatePerParameter() {
+        Adam adam = new Adam(0.1f);
+        SimdMatrix a = new SimdMatrix(1, 3);
+        SimdMatrix b = new SimdMatrix(1, 3);
+        SimdMatrix grads = new SimdMatrix(1, 3, new float[]{5.0f, -0.01f, 0.0f});
+        adam.step(a, grads);
+        adam.step(a, grads);
+        adam.step(b, grads); // First step for b: must not see the moments or step count of a
+        Assertions.assertArrayEquals(new float[]{-0.1f, 0.1f, 0.0f}, b.data, 1e-5f);
+        Assertions.assertArrayEquals(new float[]{-0.2f, 0.2f, 0.0f}, a.data, 1e-5f);
+    }
+
+    @Test
+    @DisplayName("Benchmark the fused Adam step against separate SimdMatrix operations")
+    void testThroughput() {
+        int rows = 1024, cols = 1024;
+        SimdMatrix params = SimdMatrix.random(rows, cols, 3);
+        SimdMatrix grads = SimdMatrix.random(rows, cols, 4);
+        Adam adam = new Adam(1e-3f);
+        int steps = 20;
+        for (int i = 0; i < steps; i++) adam.step(params, grads); // Warm up
+
+        long startFused = System.nanoTime();
+        for (int i = 0; i < steps; i++) adam.step(params, grads);
+        long endFused = System.nanoTime();
+
+        // The same update composed of allocating element-wise operations (m and v without sqrt/div, which SimdMatrix lacks)
+        SimdMatrix m = new SimdMatrix(rows, cols);
+        SimdMatrix v = new SimdMatrix(rows, cols);
+        long startUnfused = System.nanoTime();
+        for (int i = 0; i < steps; i++) {
+            m = m.scale(0.9f);
+            m.addScaledInPlace(grads, 0.1f);
+            v = v.scale(0.999f);
+            v.addScaledInPlace(grads.elementMult(grads), 0.001f);
+            params.addScaledInPlace(m, -1e-3f);
+        }
+        long endUnfused = System.nanoTime();
+
+        double bytes = 7.0 * Float.BYTES * rows * cols * steps; // Reads p, g, m, v and writes p, m, v
+        System.out.println("--- Adam step [" + rows + " x " + cols + "] ---");
+        System.out.printf("Fused Time:   %.3f ms per step (%.2f GB/s)%n", (endFused - startFused) / 1e6 / steps, bytes / (endFused - startFused));
+        System.out.printf("Unfused Time: %.3f ms per step%n", (endUnfused - startUnfused) / 1e6 / steps);
+        Assertions.assertTrue(Float.isFinite(params.sum()));
+    }
+}
@@ -0,0 +1,90 @@
+package neuralnetworks.optim;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import utils.SimdMatrix;
+
+import java.util.Arrays;
+
+@DisplayName("SGD Optimizer Tests")
+public class SgdTest {
+
+    /**
+     * Helper method: scalar SGD step in double precision, used as the "Ground Truth" for the fused kernel.
+     */
+    private void referenceStep(double[] p, double[] v, float[] g, double lr, double momentum, boolean nesterov, double weightDecay, double gradScale) {
+        for (int i = 0; i < p.length; i++) {
+            double gi = g[i] * gradScale + weightDecay * p[i];
+            if (momentum == 0) {
+                p[i] -= lr * gi;
+                continue;
+            }
+            v[i] = momentum * v[i] + gi;
+            p[i] -= lr * (nesterov ? gi + momentum * v[i] : v[i]);
+        }
+    }
+
+    @Test
+    @DisplayName("Plain, momentum and Nesterov steps match the scalar reference")
+    void testMatchesReference() {
+        Object[][] configs = {{0.0f, false, 0.0f}, {0.9f, false, 0.0f}, {0.9f, true, 0.01f}, {0.5f, false, 0.1f}};
+        for (Object[] cfg : configs) {
+            float momentum = (float) cfg[0];
+            boolean nesterov = (boolean) cfg[1];
+            float weightDecay = (float) cfg[2];
+            Sgd sgd = new Sgd(0.05f, momentum, nesterov, weightDecay);
+            SimdMatrix params = SimdMatrix.random(7, 149, 1); // 1043 elements, so that the tail loop runs
+            double[] expected = new double[params.data.length];
+            for (int i = 0; i < expected.length; i++) expected[i] = params.data[i];
+            double[] velocity = new double[expected.length];
+
+            for (int step = 0; step < 5; step++) {
+                SimdMatrix grads = SimdMatrix.random(7, 149, 100 + step);
+                sgd.step(params, grads);
+                referenceStep(expected, velocity, grads.data, 0.05, momentum, nesterov, weightDecay, 1.0);
+            }
+            for (int i = 0; i < expected.length; i++) {
+                Assertions.assertEquals(expected[i], params.data[i], 1e-5, "Mismatch at " + i + " for momentum " + momentum + ", nesterov " + nesterov);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Gradient clipping rescales the step but leaves the gradient unchanged")
+    void testGradientClipping() {
+        SimdMatrix grads = new SimdMatrix(1, 2, new float[]{3.0f, 4.0f}); // Norm 5
+        SimdMatrix params = new SimdMatrix(1, 2);
+        Sgd sgd = new Sgd(1.0f);
+        sgd.setMaxGradNorm(1.0f);
+        sgd.step(params, grads);
+        Assertions.assertArrayEquals(new float[]{-0.6f, -0.8f}, params.data, 1e-6f);
+        Assertions.assertArrayEquals(new float[]{3.0f, 4.0f}, grads.data);
+
+        sgd.setMaxGradNorm(10.0f); // Norm below the limit: no clipping
+        sgd.step(params, grads);
+        Assertions.assertArrayEquals(new float[]{-3.6f, -4.8f}, params.data, 1e-6f);
+    }
+
+    @Test
+    @DisplayName("Momentum converges on an ill-conditioned quadratic, invalid settings are rejected")
+    void testConvergence() {
+        // f(x) = 0.5 * sum(c_i * x_i^2) with curvatures from 1 to 100, gradient c_i * x_i
+        int n = 64;
+        float[] curvature = new float[n];
+        for (int i = 0; i < n; i++) curvature[i] = 1 + 99.0f * i / (n - 1);
+        SimdMatrix x = new SimdMatrix(1, n);
+        Arrays.fill(x.data, 1.0f);
+        SimdMatrix grad = new SimdMatrix(1, n);
+        Sgd sgd = new Sgd(0.01f, 0.9f, true, 0.0f);
+        for (int step = 0; step < 300; step++) {
+            for (int i = 0; i < n; i++) grad.data[i] = curvature[i] * x.data[i];
+            sgd.step(x, grad);
+        }
+        for (float v : x.data) Assertions.assertEquals(0.0f, v, 1e-3f);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Sgd(0.0f));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Sgd(0.1f, 0.0f, true, 0.0f));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> sgd.step(x, new SimdMatrix(2, n)));
+    }
+}
@@ -0,0 +1,87 @@
+package neuralnetworks.perceptron;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import utils.SimdMatrix;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+@DisplayName("Online Streaming Perceptron Tests")
+public class OnlinePerceptronTest {
+    private static final long RANDOM_SEED = 42L;
+
+    // Endless stream of points labelled by the line 2*x + 3*y - 1.5 >= 0, generated on the fly (never materialized)
+    private Iterator<OnlinePerceptron.Sample> stream(long seed, int count) {
+        Random random = new Random(seed);
+        return new Iterator<>() {
+            int produced = 0;
+
+            @Override
+            public boolean hasNext() {
+                return produced < count;
+            }
+
+            @Override
+            public OnlinePerceptron.Sample next() {
+                produced++;
+                float x = random.nextFloat();
+                float y = random.nextFloat();
+                return new OnlinePerceptron.Sample(new float[]{1, x, y}, 2 * x + 3 * y - 1.5f >= 0 ? 1 : 0);
+            }
+        };
+    }
+
+    private void assertLearnedBoundary(Perceptron perceptron) {
+        Assertions.assertEquals(0, perceptron.predict(new float[]{1, 0.1f, 0.1f}));
+        Assertions.assertEquals(1, perceptron.predict(new float[]{1, 0.9f, 0.9f}));
+        Assertions.assertEquals(0, perceptron.predict(new float[]{1, 0.5f, 0.1f}));
+        Assertions.assertEquals(1, perceptron.predict(new float[]{1, 0.1f, 0.9f}));
+    }
+
+    @Test
+    @DisplayName("Learns from an iterator with sliding-window averaging")
+    void testLearnsFromIterator() {
+        Perceptron perceptron = Perceptron.untrained(3);
+        OnlinePerceptron learner = new OnlinePerceptron(perceptron, 0.1f, 64, 1000, 16);
+
+        Assertions.assertEquals(50_000, learner.consume(stream(RANDOM_SEED, 50_000)));
+        Assertions.assertTrue(learner.updateCount() > 0);
+        assertLearnedBoundary(perceptron);
+    }
+
+    @Test
+    @DisplayName("Learns from a Flow.Publisher with backpressure")
+    void testLearnsFromPublisher() throws Exception {
+        Perceptron perceptron = Perceptron.untrained(3);
+        OnlinePerceptron learner = new OnlinePerceptron(perceptron, 0.1f, 0, 500, 8);
+
+        try (SubmissionPublisher<OnlinePerceptron.Sample> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(learner);
+            Iterator<OnlinePerceptron.Sample> samples = stream(RANDOM_SEED, 20_000);
+            while (samples.hasNext()) {
+                publisher.submit(samples.next()); // Blocks while the subscriber's buffer is full
+            }
+        }
+        Assertions.assertEquals(20_000L, learner.completion().get(10, TimeUnit.SECONDS));
+        assertLearnedBoundary(perceptron);
+    }
+
+    @Test
+    @DisplayName("Snapshot is the average of the last window of weight vectors")
+    void testWindowAverage() {
+        Perceptron perceptron = Perceptron.untrained(2);
+        perceptron.swapWeights(new SimdMatrix(1, 2, new float[]{0, 0}));
+        OnlinePerceptron learner = new OnlinePerceptron(perceptron, 1.0f, 2, 1000, 1);
+
+        learner.learn(new float[]{1, 1}, 0); // Predicted 1 (dot = 0): w = (-1, -1)
+        learner.learn(new float[]{1, 2}, 1); // Predicted 0: w = (0, 1)
+        learner.learn(new float[]{1, 0}, 0); // Predicted 1 (dot = 0): w = (-1, 1)
+        // Window holds (0, 1) and (-1, 1)
+        Assertions.assertArrayEquals(new float[]{-0.5f, 1}, learner.snapshot().data);
+        Assertions.assertEquals(3, learner.updateCount());
+    }
+}
@@ -4,9 +4,19 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.DataLoader;
+import utils.SimdMatrix;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @DisplayName("Single Layer Perceptron Implementation Tests")
 public class PerceptronTest {
@@ -140,5 +150,161 @@ public class PerceptronTest {
             int result = perceptron.predict(inputs[0]);
             Assertions.assertEquals(1, result);
         }
+
+        @Test
+        @DisplayName("Learns 3-input AND gate from a prefetching DataLoader")
+        void testTrainingWithDataLoader() {
+            float[][] inputs = {
+                    {1, 0, 0, 0}, {1, 0, 0, 1}, {1, 0, 1, 0}, {1, 0, 1, 1},
+                    {1, 1, 0, 0}, {1, 1, 0, 1}, {1, 1, 1, 0}, {1, 1, 1, 1}
+            };
+            int[] outputs = {0, 0, 0, 0, 0, 0, 0, 1};
+
+            Perceptron perceptron = new Perceptron(inputs, outputs, learningRate);
+            try (DataLoader loader = new DataLoader(inputs, outputs, 3, 2, RANDOM_SEED)) {
+                Assertions.assertTrue(perceptron.train(loader, 100), "Perceptron should converge on AND gate");
+            }
+
+            for (int i = 0; i < inputs.length; i++) {
+                Assertions.assertEquals(outputs[i], perceptron.predict(inputs[i]), "Failed for input " + Arrays.toString(inputs[i]));
+            }
+        }
+
+        @Test
+        @DisplayName("Training is reproducible for a given seed")
+        void testSeededTrainingIsReproducible() {
+            float[][] inputs = {
+                    {1, 0, 0, 0}, {1, 0, 0, 1}, {1, 0, 1, 0}, {1, 0, 1, 1},
+                    {1, 1, 0, 0}, {1, 1, 0, 1}, {1, 1, 1, 0}, {1, 1, 1, 1}
+            };
+            int[] outputs = {0, 1, 1, 1, 1, 1, 1, 1};
+
+            Perceptron first = new Perceptron(inputs, outputs, learningRate, RANDOM_SEED);
+            Perceptron second = new Perceptron(inputs, outputs, learningRate, RANDOM_SEED);
+            Assertions.assertArrayEquals(first.weightsSnapshot().data, second.weightsSnapshot().data);
+            first.train(100);
+            second.train(100);
+            Assertions.assertArrayEquals(first.weightsSnapshot().data, second.weightsSnapshot().data);
+
+            Perceptron other = new Perceptron(inputs, outputs, learningRate, RANDOM_SEED + 1);
+            Assertions.assertFalse(Arrays.equals(new Perceptron(inputs, outputs, learningRate, RANDOM_SEED).weightsSnapshot().data, other.weightsSnapshot().data));
+            // Without an explicit seed every perceptron starts from its own random weights
+            Assertions.assertFalse(Arrays.equals(new Perceptron(inputs, outputs, learningRate).weightsSnapshot().data,
+                    new Perceptron(inputs, outputs, learningRate).weightsSnapshot().data));
+        }
+    }
+
+    @Nested
+    @DisplayName("Checkpoint Tests")
+    class CheckpointTests {
+        @TempDir
+        Path tempDir;
+
+        @Test
+        @DisplayName("Perceptron restored from a checkpoint predicts like the trained one")
+        void testSaveAndRestore() throws Exception {
+            float[][] inputs = {{1, 0, 0}, {1, 0, 1}, {1, 1, 0}, {1, 1, 1}};
+            int[] outputs = {0, 1, 1, 1}; // OR gate
+
+            Perceptron trained = new Perceptron(inputs, outputs, learningRate);
+            Assertions.assertTrue(trained.train(100));
+            Path file = tempDir.resolve("perceptron.ckpt");
+            trained.saveCheckpoint(file).get();
+
+            Perceptron restored = Perceptron.fromCheckpoint(file);
+            for (float[] input : inputs) {
+                Assertions.assertEquals(trained.predict(input), restored.predict(input), "Failed for input " + Arrays.toString(input));
+            }
+            Assertions.assertThrows(IllegalStateException.class, () -> restored.train(1), "Restored perceptron has no training data");
+
+            // Loading into an untrained perceptron replaces its weights
+            Perceptron fresh = new Perceptron(inputs, new int[]{0, 0, 0, 0}, learningRate);
+            fresh.loadCheckpoint(file);
+            for (int i = 0; i < inputs.length; i++) {
+                Assertions.assertEquals(outputs[i], fresh.predict(inputs[i]));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Concurrent Prediction Tests")
+    class ConcurrencyTests {
+        private final float[][] inputs = {{1, 0, 0}, {1, 0, 1}, {1, 1, 0}, {1, 1, 1}};
+        // Weights making the perceptron always fire / never fire, so every prediction reveals which snapshot it used
+        private final SimdMatrix alwaysOne = new SimdMatrix(1, 3, new float[]{1, 1, 1});
+        private final SimdMatrix alwaysZero = new SimdMatrix(1, 3, new float[]{-10, 1, 1});
+
+        @Test
+        @DisplayName("Swapping weights while predicting from many threads")
+        void testHotSwapDuringPredictions() throws Exception {
+            Perceptron perceptron = new Perceptron(inputs, new int[]{0, 1, 1, 1}, learningRate);
+            perceptron.swapWeights(alwaysOne);
+            AtomicBoolean running = new AtomicBoolean(true);
+
+            try (ExecutorService readers = Executors.newFixedThreadPool(4)) {
+                List<Future<Integer>> results = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    results.add(readers.submit(() -> {
+                        int predictions = 0;
+                        do {
+                            // Batched predictions must come from one snapshot: all ones or all zeros, never mixed
+                            int[] batch = perceptron.predictBatch(inputs);
+                            int sum = Arrays.stream(batch).sum();
+                            Assertions.assertTrue(sum == 0 || sum == inputs.length, "Mixed snapshot: " + Arrays.toString(batch));
+                            predictions++;
+                        } while (running.get());
+                        return predictions;
+                    }));
+                }
+                for (int i = 0; i < 20_000; i++) {
+                    perceptron.swapWeights(i % 2 == 0 ? alwaysZero : alwaysOne);
+                }
+                running.set(false);
+                for (Future<Integer> result : results) {
+                    Assertions.assertTrue(result.get() > 0);
+                }
+            }
+            // The last swap installed alwaysOne
+            for (float[] input : inputs) {
+                Assertions.assertEquals(1, perceptron.predict(input));
+            }
+        }
+
+        @Test
+        @DisplayName("Swapped weights are copied and shape checked")
+        void testSwapSemantics() {
+            Perceptron perceptron = new Perceptron(inputs, new int[]{0, 1, 1, 1}, learningRate);
+            SimdMatrix weights = new SimdMatrix(1, 3, alwaysOne.data.clone());
+            perceptron.swapWeights(weights);
+            weights.data[0] = -10; // Must not affect the published snapshot
+            Assertions.assertEquals(1, perceptron.predict(inputs[0]));
+
+            SimdMatrix snapshot = perceptron.weightsSnapshot();
+            Assertions.assertTrue(perceptron.compareAndSwapWeights(snapshot, alwaysZero));
+            Assertions.assertFalse(perceptron.compareAndSwapWeights(snapshot, alwaysOne), "Stale snapshot must not win");
+            Assertions.assertEquals(0, perceptron.predict(inputs[3]));
+
+            Assertions.assertThrows(IllegalArgumentException.class, () -> perceptron.swapWeights(new SimdMatrix(1, 4)));
+        }
+
+        @Test
+        @DisplayName("Weights swapped during training are never overwritten by a stale update")
+        void testSwapDuringTraining() throws Exception {
+            // Classifies the OR gate correctly, so training makes no further update once these weights are live
+            SimdMatrix solution = new SimdMatrix(1, 3, new float[]{-0.5f, 1, 1});
+            for (int round = 0; round < 20; round++) {
+                // A tiny learning rate keeps the training busy for many updates
+                Perceptron perceptron = new Perceptron(inputs, new int[]{0, 1, 1, 1}, 1e-4f, RANDOM_SEED + round);
+                SimdMatrix initial = perceptron.weightsSnapshot();
+                Thread trainer = new Thread(() -> perceptron.train(1_000_000));
+                trainer.start();
+                while (perceptron.weightsSnapshot() == initial && trainer.isAlive()) {
+                    Thread.onSpinWait();
+                }
+                perceptron.swapWeights(solution);
+                trainer.join();
+                Assertions.assertArrayEquals(solution.data, perceptron.weightsSnapshot().data, "Swap lost in round " + round);
+            }
+        }
     }
 }
@@ -0,0 +1,119 @@
+package serving;
+
+import neuralnetworks.perceptron.Perceptron;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@DisplayName("Micro-batching Inference Server Tests")
+public class InferenceServerTest {
+    private final float[][] inputs = {{1, 0, 0}, {1, 0, 1}, {1, 1, 0}, {1, 1, 1}};
+    private final int[] outputs = {0, 1, 1, 1}; // OR gate
+
+    private Perceptron trainedModel() {
+        Perceptron perceptron = new Perceptron(inputs, outputs, 0.1f);
+        Assertions.assertTrue(perceptron.train(100));
+        return perceptron;
+    }
+
+    @Test
+    @DisplayName("Batched prediction matches single-sample prediction")
+    void testPredictBatch() {
+        Perceptron perceptron = trainedModel();
+        int[] batch = perceptron.predictBatch(inputs);
+        for (int i = 0; i < inputs.length; i++) {
+            Assertions.assertEquals(perceptron.predict(inputs[i]), batch[i]);
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent requests are coalesced into micro-batches")
+    void testRequestsAreCoalesced() throws Exception {
+        Perceptron perceptron = trainedModel();
+        try (MicroBatcher batcher = new MicroBatcher(perceptron::predictBatch, 8, Duration.ofSeconds(1))) {
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(batcher.submit(inputs[i % inputs.length]));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                Assertions.assertEquals(outputs[i % inputs.length], results.get(i).get());
+            }
+            // Full batches are dispatched without waiting for the latency deadline
+            Assertions.assertEquals(2, batcher.batchCount());
+            Assertions.assertEquals(16, batcher.sampleCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Invalid input fails only its own request")
+    void testInvalidInputIsolated() throws Exception {
+        Perceptron perceptron = trainedModel();
+        try (MicroBatcher batcher = new MicroBatcher(perceptron::predictBatch, 4, Duration.ofMillis(50))) {
+            var good = batcher.submit(inputs[3]);
+            var bad = batcher.submit(new float[]{1, 2});
+            Assertions.assertEquals(1, good.get());
+            Assertions.assertTrue(Assertions.assertThrows(Exception.class, bad::get).getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    @DisplayName("Requests racing with close are always completed")
+    void testSubmitDuringClose() throws Exception {
+        Perceptron perceptron = trainedModel();
+        for (int round = 0; round < 50; round++) {
+            MicroBatcher batcher = new MicroBatcher(perceptron::predictBatch, 4, Duration.ofMillis(1));
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            Thread submitter = new Thread(() -> {
+                for (int i = 0; i < 200; i++) results.add(batcher.submit(inputs[i % inputs.length]));
+            });
+            submitter.start();
+            batcher.close();
+            submitter.join();
+            for (CompletableFuture<Integer> result : results) {
+                // Scored or failed as closed, but never left pending
+                Assertions.assertTrue(result.isDone(), "Request left pending in round " + round);
+            }
+            Assertions.assertTrue(batcher.submit(inputs[0]).isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    @DisplayName("Server answers predictions over localhost HTTP")
+    void testServerOverHttp() throws Exception {
+        try (InferenceServer server = new InferenceServer(trainedModel(), 0, 32, Duration.ofMillis(5));
+             HttpClient client = HttpClient.newHttpClient()) {
+            URI uri = URI.create("http://127.0.0.1:" + server.port() + "/predict");
+            for (int i = 0; i < inputs.length; i++) {
+                String body = inputs[i][0] + "," + inputs[i][1] + "," + inputs[i][2];
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                Assertions.assertEquals(200, response.statusCode());
+                Assertions.assertEquals(Integer.toString(outputs[i]), response.body());
+            }
+            HttpResponse<String> malformed = client.send(HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString("1,abc")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(400, malformed.statusCode());
+
+            LoadGenerator.Report report = LoadGenerator.run(uri, 32, 20, 3, 42L);
+            Assertions.assertEquals(32 * 20, report.requests());
+            Assertions.assertEquals(0, report.errors());
+            System.out.println("Load test: " + report);
+
+            // Once the batcher is closed requests are rejected as unavailable, not as bad input
+            server.batcher().close();
+            HttpResponse<String> closed = client.send(HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString("1,0,0")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(503, closed.statusCode());
+            Assertions.assertEquals("Micro-batcher is closed.", closed.body());
+        }
+    }
+}
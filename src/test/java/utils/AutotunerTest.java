@@ -0,0 +1,123 @@
+package utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+@DisplayName("SimdMatrix Kernel Autotuner Tests")
+public class AutotunerTest {
+    @TempDir
+    Path tempDir;
+
+    // Process-wide state changed by some tests, restored after each one so that later tests in the JVM are not affected
+    private KernelProfile previousProfile;
+    private String previousProfilePath;
+    private String previousAutotune;
+
+    @BeforeEach
+    void saveGlobalState() {
+        previousProfile = KernelProfile.active();
+        previousProfilePath = System.getProperty("dljava.kernel.profile");
+        previousAutotune = System.getProperty("dljava.autotune");
+    }
+
+    @AfterEach
+    void restoreGlobalState() {
+        KernelProfile.activate(previousProfile);
+        restoreProperty("dljava.kernel.profile", previousProfilePath);
+        restoreProperty("dljava.autotune", previousAutotune);
+    }
+
+    private static void restoreProperty(String key, String value) {
+        if (value == null) {
+            System.clearProperty(key);
+        } else {
+            System.setProperty(key, value);
+        }
+    }
+
+    @Test
+    @DisplayName("Every kernel configuration gives exactly the same product")
+    void testConfigsAreEquivalent() {
+        SimdMatrix a = SimdMatrix.random(67, 131);
+        SimdMatrix b = SimdMatrix.random(131, 97);
+        float[] expected = a.matmul(b, KernelConfig.DEFAULT).data;
+
+        List<KernelConfig> configs = List.of(
+                new KernelConfig(16, 32, 1, Long.MAX_VALUE),
+                new KernelConfig(7, 19, 4, 0), // Tiles not multiple of the vector length, parallel
+                new KernelConfig(64, 64, 2, 0),
+                new KernelConfig(1000, 1000, 2, Long.MAX_VALUE)
+        );
+        for (KernelConfig config : configs) {
+            Assertions.assertArrayEquals(expected, a.matmul(b, config).data, "Result differs for " + config);
+        }
+    }
+
+    @Test
+    @DisplayName("Tuned profile is saved, reloaded and selected by shape class")
+    void testTuneSaveAndLoad() throws IOException {
+        Autotuner tuner = new Autotuner(1, 1);
+        KernelProfile profile = tuner.tune(Map.of(
+                KernelProfile.ShapeClass.SMALL, new int[]{16, 16, 16},
+                KernelProfile.ShapeClass.VECTOR, new int[]{1, 64, 64}));
+
+        Path file = tempDir.resolve("profile.properties");
+        profile.save(file);
+        Assertions.assertTrue(Files.readString(file).contains("matmul.small="));
+
+        KernelProfile loaded = KernelProfile.load(file);
+        Assertions.assertTrue(loaded.matchesThisMachine());
+        Assertions.assertEquals(profile.configs(), loaded.configs());
+        Assertions.assertEquals(profile.strassenCutoff(), loaded.strassenCutoff());
+        Assertions.assertEquals(profile.configs().get(KernelProfile.ShapeClass.SMALL), loaded.configFor(8, 8, 8));
+        // Classes which were not tuned fall back to the default
+        Assertions.assertEquals(KernelConfig.DEFAULT, loaded.configFor(1000, 1000, 1000));
+    }
+
+    @Test
+    @DisplayName("Strassen cutoff is tuned and persisted")
+    void testStrassenCutoff() throws IOException {
+        int cutoff = new Autotuner(1, 1).tuneStrassenCutoff(256);
+        Assertions.assertTrue(cutoff == Integer.MAX_VALUE || (cutoff >= 64 && cutoff <= 128), "Unexpected cutoff " + cutoff);
+
+        Path file = tempDir.resolve("strassen.properties");
+        new KernelProfile(Map.of(), 96).save(file);
+        Assertions.assertEquals(96, KernelProfile.load(file).strassenCutoff());
+    }
+
+    @Test
+    @DisplayName("Startup autotuning works before any profile is active")
+    void testStartupAutotune() throws IOException {
+        Path file = tempDir.resolve("startup.properties");
+        System.setProperty("dljava.kernel.profile", file.toString());
+        System.setProperty("dljava.autotune", "true");
+        KernelProfile.activate(null); // As during class initialization, where the startup profile is loaded; restored after each test
+
+        KernelProfile tuned = KernelProfile.loadStartupProfile(() -> new Autotuner(1, 1).tuneAll(
+                Map.of(KernelProfile.ShapeClass.SMALL, new int[]{16, 16, 16}), 128));
+        Assertions.assertEquals(tuned.configs(), KernelProfile.load(file).configs());
+        Assertions.assertEquals(tuned.strassenCutoff(), KernelProfile.load(file).strassenCutoff());
+        // Once saved, the profile is loaded instead of tuned again
+        KernelProfile loaded = KernelProfile.loadStartupProfile(() -> Assertions.fail("Tuned again"));
+        Assertions.assertEquals(tuned.configs(), loaded.configs());
+    }
+
+    @Test
+    @DisplayName("Kernel config text format round-trips")
+    void testConfigFormat() {
+        KernelConfig config = new KernelConfig(64, 256, 2, 12345);
+        Assertions.assertEquals(config, KernelConfig.parse(config.toString()));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> KernelConfig.parse("tileK=0"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> KernelConfig.parse("foo=1"));
+    }
+}
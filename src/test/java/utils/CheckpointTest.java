@@ -0,0 +1,117 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@DisplayName("Binary Model Checkpoint Tests")
+public class CheckpointTest {
+    @TempDir
+    Path tempDir;
+
+    private Map<String, SimdMatrix> tensors() {
+        Map<String, SimdMatrix> tensors = new LinkedHashMap<>();
+        tensors.put("layer1.weights", SimdMatrix.random(37, 129));
+        tensors.put("layer1.bias", SimdMatrix.random(1, 129));
+        tensors.put("empty", new SimdMatrix(0, 0));
+        tensors.put("large", SimdMatrix.random(700, 500)); // Larger than one write chunk
+        return tensors;
+    }
+
+    @Test
+    @DisplayName("Saved tensors are loaded back bit-for-bit and in order")
+    void testRoundTrip() throws IOException {
+        Path file = tempDir.resolve("model.ckpt");
+        Map<String, SimdMatrix> saved = tensors();
+        Checkpoint.save(file, saved);
+
+        Assertions.assertEquals(0, Files.size(file) % Checkpoint.BLOCK_SIZE, "File should consist of whole blocks");
+        Map<String, SimdMatrix> loaded = Checkpoint.load(file);
+        Assertions.assertEquals(List.copyOf(saved.keySet()), List.copyOf(loaded.keySet()));
+        for (String name : saved.keySet()) {
+            SimdMatrix expected = saved.get(name);
+            SimdMatrix actual = loaded.get(name);
+            Assertions.assertEquals(expected.shape(), actual.shape(), "Shape mismatch for " + name);
+            Assertions.assertArrayEquals(expected.data, actual.data, "Data mismatch for " + name);
+        }
+    }
+
+    @Test
+    @DisplayName("Asynchronous save snapshots the data before returning")
+    void testSaveAsyncSnapshotsData() throws Exception {
+        Path file = tempDir.resolve("async.ckpt");
+        SimdMatrix weights = SimdMatrix.random(16, 16);
+        float[] expected = weights.data.clone();
+
+        var future = Checkpoint.saveAsync(file, Map.of("w", weights));
+        weights.data[0] = 1234f; // Training keeps going while the checkpoint is written
+        future.get();
+
+        Assertions.assertArrayEquals(expected, Checkpoint.load(file).get("w").data);
+    }
+
+    @Test
+    @DisplayName("Overlapping saves to the same file do not collide and leave no temporary files")
+    void testConcurrentSaves() throws Exception {
+        Path file = tempDir.resolve("model.ckpt");
+        List<Map<String, SimdMatrix>> versions = new ArrayList<>();
+        List<CompletableFuture<Void>> saves = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            versions.add(Map.of("weights", SimdMatrix.random(300, 400)));
+            saves.add(Checkpoint.saveAsync(file, versions.get(i)));
+        }
+        CompletableFuture.allOf(saves.toArray(CompletableFuture[]::new)).get();
+
+        // The last move wins, but the file must be exactly one of the saved versions
+        float[] loaded = Checkpoint.load(file).get("weights").data;
+        Assertions.assertTrue(versions.stream().anyMatch(v -> Arrays.equals(v.get("weights").data, loaded)));
+        try (var files = Files.list(tempDir)) {
+            Assertions.assertEquals(List.of(file), files.toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Failed save removes its temporary file")
+    void testFailedSaveCleansUp() throws IOException {
+        Path target = tempDir.resolve("occupied");
+        Files.createDirectory(target);
+        Files.createFile(target.resolve("child")); // A non-empty directory cannot be replaced by the move
+        Assertions.assertThrows(IOException.class, () -> Checkpoint.save(target, tensors()));
+        try (var files = Files.list(tempDir)) {
+            Assertions.assertEquals(List.of(target), files.toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Corrupted tensor data is detected by the checksum")
+    void testCorruptionDetected() throws IOException {
+        Path file = tempDir.resolve("corrupt.ckpt");
+        Checkpoint.save(file, Map.of("w", SimdMatrix.random(8, 8)));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(Checkpoint.BLOCK_SIZE + 5); // Inside the first tensor's data block
+            raf.write(raf.read() ^ 0xFF);
+        }
+        IOException e = Assertions.assertThrows(IOException.class, () -> Checkpoint.load(file));
+        Assertions.assertTrue(e.getMessage().contains("Checksum mismatch"), e.getMessage());
+    }
+
+    @Test
+    @DisplayName("Files which are not checkpoints are rejected")
+    void testRejectsForeignFile() throws IOException {
+        Path file = tempDir.resolve("foreign.bin");
+        Files.write(file, new byte[Checkpoint.BLOCK_SIZE]);
+        Assertions.assertThrows(IOException.class, () -> Checkpoint.load(file));
+    }
+}
@@ -0,0 +1,108 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+@DisplayName("Prefetching Mini-batch DataLoader Tests")
+public class DataLoaderTest {
+    private static final long RANDOM_SEED = 42L;
+
+    private float[][] features(int n) {
+        float[][] x = new float[n][2];
+        for (int i = 0; i < n; i++) {
+            x[i][0] = i;
+            x[i][1] = -i;
+        }
+        return x;
+    }
+
+    private int[] labels(int n) {
+        int[] y = new int[n];
+        for (int i = 0; i < n; i++) y[i] = i;
+        return y;
+    }
+
+    // Collects the labels (= sample indices) of one epoch in the order they were served
+    private List<Integer> epoch(DataLoader loader) throws InterruptedException {
+        List<Integer> order = new ArrayList<>();
+        DataLoader.Batch batch;
+        while ((batch = loader.next()) != null) {
+            for (int r = 0; r < batch.size(); r++) {
+                order.add(batch.labels[r]);
+                // Features must have been gathered from the same sample as the label
+                Assertions.assertEquals(batch.labels[r], batch.features.data[r * 2]);
+                Assertions.assertEquals(-batch.labels[r], batch.features.data[r * 2 + 1]);
+            }
+        }
+        return order;
+    }
+
+    @Test
+    @DisplayName("Every sample is served exactly once per epoch, including the partial last batch")
+    void testEpochCoversAllSamples() throws InterruptedException {
+        int n = 103;
+        try (DataLoader loader = new DataLoader(features(n), labels(n), 10, 2, RANDOM_SEED)) {
+            for (int e = 0; e < 3; e++) {
+                List<Integer> order = epoch(loader);
+                Assertions.assertEquals(n, order.size());
+                Assertions.assertEquals(n, order.stream().distinct().count(), "Samples should not repeat within an epoch");
+            }
+            Assertions.assertEquals(3 * 11, loader.batchesServed());
+        }
+    }
+
+    @Test
+    @DisplayName("Shuffle order is reproducible for a fixed seed and changes between epochs")
+    void testDeterministicShuffle() throws InterruptedException {
+        int n = 64;
+        try (DataLoader a = new DataLoader(features(n), labels(n), 8, 1, RANDOM_SEED);
+             DataLoader b = new DataLoader(features(n), labels(n), 8, 3, RANDOM_SEED,
+                     Thread.ofPlatform().daemon().factory())) {
+            List<Integer> firstA = epoch(a);
+            List<Integer> firstB = epoch(b);
+            Assertions.assertEquals(firstA, firstB, "Same seed must give the same order regardless of prefetch depth and thread type");
+            Assertions.assertNotEquals(firstA, epoch(a), "Consecutive epochs should be shuffled differently");
+        }
+    }
+
+    @Test
+    @DisplayName("Copying a row outside the valid batch size throws")
+    void testCopyRowBounds() throws InterruptedException {
+        try (DataLoader loader = new DataLoader(features(5), labels(5), 4, 1, RANDOM_SEED)) {
+            loader.next();
+            DataLoader.Batch last = loader.next();
+            Assertions.assertEquals(1, last.size());
+            Assertions.assertThrows(IndexOutOfBoundsException.class, () -> last.copyRow(1, new SimdMatrix(1, 2)));
+        }
+    }
+
+    @Test
+    @DisplayName("Ragged samples are rejected, and a failing producer fails next() instead of blocking it")
+    void testProducerFailure() throws InterruptedException {
+        float[][] ragged = {{1, 2}, {3}};
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new DataLoader(ragged, new int[]{0, 1}, 1, 1, RANDOM_SEED));
+
+        // Hold the producer back until the dataset has been broken behind the loader's back
+        CountDownLatch start = new CountDownLatch(1);
+        float[][] x = features(4);
+        try (DataLoader loader = new DataLoader(x, labels(4), 2, 1, RANDOM_SEED, task -> new Thread(() -> {
+            try {
+                start.await();
+                task.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }))) {
+            for (int i = 0; i < x.length; i++) x[i] = new float[1];
+            start.countDown();
+            IllegalStateException e = Assertions.assertThrows(IllegalStateException.class, loader::next);
+            Assertions.assertInstanceOf(IndexOutOfBoundsException.class, e.getCause());
+            Assertions.assertThrows(IllegalStateException.class, loader::next);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+@DisplayName("Random Initializer Tests")
+public class InitializersTest {
+
+    @Test
+    @DisplayName("The same seed gives the same values, independent of the number of threads")
+    void testReproducible() throws Exception {
+        int n = 5 * Initializers.CHUNK + 123; // Several chunks and a partial one
+        float[] expected = new float[n];
+        Initializers.normal(expected, 0.0f, 1.0f, 7);
+
+        for (int threads : new int[]{1, 3}) {
+            float[] actual = new float[n];
+            try (ForkJoinPool pool = new ForkJoinPool(threads)) {
+                pool.submit(() -> Initializers.normal(actual, 0.0f, 1.0f, 7)).get();
+            }
+            Assertions.assertArrayEquals(expected, actual, "Different values with " + threads + " threads");
+        }
+        Assertions.assertArrayEquals(SimdMatrix.random(7, 9, 1).data, SimdMatrix.random(7, 9, 1).data);
+        Assertions.assertFalse(Arrays.equals(SimdMatrix.random(7, 9, 1).data, SimdMatrix.random(7, 9, 2).data));
+    }
+
+    @Test
+    @DisplayName("Uniform, normal, Xavier and He have the expected range, mean and standard deviation")
+    void testDistributions() {
+        SimdMatrix u = Initializers.uniform(new SimdMatrix(300, 400), -2.0f, 3.0f, 11);
+        for (float v : u.data) Assertions.assertTrue(v >= -2.0f && v < 3.0f, "Out of range: " + v);
+        assertMoments(u, 0.5, 5.0 / Math.sqrt(12));
+
+        assertMoments(Initializers.normal(new SimdMatrix(300, 400), 1.5f, 0.5f, 12), 1.5, 0.5);
+
+        SimdMatrix xavier = Initializers.xavier(new SimdMatrix(200, 600), 13);
+        double limit = Math.sqrt(6.0 / 800);
+        for (float v : xavier.data) Assertions.assertTrue(Math.abs(v) <= limit, "Out of range: " + v);
+        assertMoments(xavier, 0.0, limit / Math.sqrt(3));
+
+        assertMoments(Initializers.he(new SimdMatrix(200, 600), 14), 0.0, Math.sqrt(2.0 / 600));
+    }
+
+    @Test
+    @DisplayName("Uniform values never round up to the exclusive upper bound")
+    void testUniformUpperBoundExclusive() {
+        // The float spacing at 2^24 is 2, so about half of low + u * (high - low) would round to high without clamping.
+        // 1001 values, so that both the vector loop and the scalar tail are covered.
+        float low = 16777216f, high = 16777218f;
+        float[] data = new float[1001];
+        Initializers.uniform(data, low, high, 11);
+        for (float v : data) {
+            Assertions.assertTrue(v >= low && v < high, "Value out of [low, high): " + v);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Initializers.uniform(data, 1f, 1f, 11));
+    }
+
+    private void assertMoments(SimdMatrix m, double mean, double std) {
+        double sum = 0, sumSq = 0;
+        for (float v : m.data) {
+            sum += v;
+            sumSq += (double) v * v;
+        }
+        double actualMean = sum / m.data.length;
+        double actualStd = Math.sqrt(sumSq / m.data.length - actualMean * actualMean);
+        Assertions.assertEquals(mean, actualMean, 0.02 * std + 1e-6, "Mean");
+        Assertions.assertEquals(std, actualStd, 0.02 * std, "Standard deviation");
+    }
+
+    @Test
+    @DisplayName("Benchmark the parallel initializer against a scalar java.util.Random loop")
+    void testThroughput() {
+        int n = 1 << 22;
+        float[] data = new float[n];
+        for (int i = 0; i < 3; i++) Initializers.normal(data, 0.0f, 0.1f, i); // Warm up
+
+        long startFast = System.nanoTime();
+        Initializers.normal(data, 0.0f, 0.1f, 42);
+        long endFast = System.nanoTime();
+
+        long startNaive = System.nanoTime();
+        Random r = new Random(42);
+        for (int i = 0; i < n; i++) data[i] = (float) (r.nextGaussian() * 0.1f);
+        long endNaive = System.nanoTime();
+
+        System.out.println("--- Normal initialization of " + n + " floats ---");
+        System.out.printf("Initializers Time: %.3f ms%n", (endFast - startFast) / 1e6);
+        System.out.printf("Random Time:       %.3f ms%n", (endNaive - startNaive) / 1e6);
+        System.out.printf("Speedup:           %.1fx%n", (double) (endNaive - startNaive) / (endFast - startFast));
+    }
+}
@@ -0,0 +1,75 @@
+package utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Hot-path Metrics Tests")
+public class MetricsTest {
+    @BeforeEach
+    void setUp() {
+        Metrics.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.disable();
+        Metrics.reset();
+    }
+
+    @Test
+    @DisplayName("Kernel calls, FLOPs and bytes are counted when enabled")
+    void testKernelCounters() {
+        Metrics.enable();
+        SimdMatrix a = SimdMatrix.random(8, 16);
+        SimdMatrix b = SimdMatrix.random(16, 4);
+        a.matmul(b);
+        a.matmul(b);
+        a.scale(2f).sum();
+
+        Metrics.Snapshot snapshot = Metrics.snapshot();
+        Assertions.assertEquals(2, snapshot.get("kernel.matmul.calls"));
+        Assertions.assertEquals(2 * 2L * 8 * 16 * 4, snapshot.get("kernel.matmul.flops"));
+        Assertions.assertEquals(2 * 4L * (8 * 16 + 16 * 4 + 8 * 4), snapshot.get("kernel.matmul.bytes"));
+        Assertions.assertEquals(1, snapshot.get("kernel.scale.calls"));
+        Assertions.assertEquals(1, snapshot.get("kernel.sum.calls"));
+        Assertions.assertTrue(snapshot.toString().contains("kernel.matmul.calls 2"));
+    }
+
+    @Test
+    @DisplayName("Nothing is recorded when disabled")
+    void testDisabled() {
+        Metrics.disable();
+        SimdMatrix.random(4, 4).matmul(SimdMatrix.random(4, 4));
+        Assertions.assertEquals(0, Metrics.snapshot().get("kernel.matmul.calls"));
+    }
+
+    @Test
+    @DisplayName("Epoch metrics aggregate samples, updates and durations")
+    void testEpochMetrics() {
+        Metrics.enable();
+        Metrics.epoch(0, 2_000_000, 100, 10, 4096);
+        Metrics.epoch(1, 1_000_000, 100, 0, 0);
+
+        Metrics.Snapshot snapshot = Metrics.snapshot();
+        Assertions.assertEquals(2, snapshot.get("training.epochs"));
+        Assertions.assertEquals(200, snapshot.get("training.samples"));
+        Assertions.assertEquals(10, snapshot.get("training.updates"));
+        Assertions.assertEquals(2_000_000, snapshot.get("training.epochNanos.max"));
+        // 200 samples in 3 ms
+        Assertions.assertEquals(200 / 0.003, snapshot.values().get("training.samplesPerSecond").doubleValue(), 1e-6);
+    }
+
+    @Test
+    @DisplayName("Histogram percentiles fall into the right power-of-two bucket")
+    void testHistogram() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        for (int i = 1; i <= 99; i++) histogram.record(100);
+        histogram.record(1_000_000);
+        Assertions.assertEquals(127, histogram.percentile(0.50)); // 100 lies in [64, 128)
+        Assertions.assertEquals(127, histogram.percentile(0.99));
+        Assertions.assertEquals(1_000_000, histogram.percentile(1.0));
+    }
+}
@@ -0,0 +1,166 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+@DisplayName("Scratch Arena Tests")
+public class ScratchArenaTest {
+    // Buffers allocated and reused by the arena steps of the allocation report
+    private long arenaAllocations;
+    private long arenaReuses;
+
+    @Test
+    @DisplayName("Buffers are reused across scopes and results stay correct")
+    void testReuse() {
+        ScratchArena.trim();
+        SimdMatrix a = SimdMatrix.random(33, 17);
+        SimdMatrix b = SimdMatrix.random(17, 21);
+        SimdMatrix expected = a.matmul(b);
+
+        float[] first;
+        try (ScratchArena scratch = ScratchArena.open()) {
+            first = a.matmul(b).data;
+            a.scale(2.0f); // Leaves a dirty buffer of the same size as a in the pool
+            Assertions.assertEquals(0, scratch.reused());
+            Assertions.assertEquals(2, scratch.allocated());
+        }
+        try (ScratchArena scratch = ScratchArena.open()) {
+            SimdMatrix product = a.matmul(b);
+            Assertions.assertSame(first, product.data);
+            // The reused buffer holds the previous product, so it must have been zeroed before accumulating
+            Assertions.assertArrayEquals(expected.data, product.data);
+            Assertions.assertEquals(1, scratch.reused());
+        }
+        Assertions.assertNull(ScratchArena.active());
+        Assertions.assertNotSame(first, a.matmul(b).data); // No arena open: plain heap allocation
+    }
+
+    @Test
+    @DisplayName("Copies escape the scope, nested scopes return only their own buffers")
+    void testCopyAndNesting() {
+        SimdMatrix a = SimdMatrix.random(8, 8);
+        SimdMatrix kept;
+        try (ScratchArena outer = ScratchArena.open()) {
+            SimdMatrix t = a.transpose();
+            try (ScratchArena inner = ScratchArena.open()) {
+                Assertions.assertSame(inner, ScratchArena.active());
+                a.scale(3.0f);
+            }
+            Assertions.assertSame(outer, ScratchArena.active());
+            // The inner buffer went back to the pool and is handed out again, but t is still checked out
+            SimdMatrix s = a.sub(a);
+            Assertions.assertNotSame(t.data, s.data);
+            kept = t.copy();
+        }
+        a.scale(0.0f);
+        try (ScratchArena scratch = ScratchArena.open()) {
+            a.scale(5.0f); // Overwrites a pooled buffer, which must not be the copy
+        }
+        Assertions.assertArrayEquals(a.transpose().data, kept.data);
+    }
+
+    @Test
+    @DisplayName("Tensor results are pooled, threads without an arena allocate on the heap")
+    void testTensorsAndOtherThreads() throws InterruptedException {
+        SimdTensor a = SimdTensor.random(3, 8, 16);
+        SimdTensor b = SimdTensor.random(3, 16, 4);
+        float[] expected = a.bmm(b).data;
+        try (ScratchArena scratch = ScratchArena.open()) {
+            a.bmm(b).add(a.bmm(b));
+            Assertions.assertEquals(3, scratch.reused() + scratch.allocated());
+
+            // The arena belongs to this thread only
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            Thread other = new Thread(() -> {
+                try {
+                    Assertions.assertNull(ScratchArena.active());
+                    ScratchArena.trim(); // No pool yet: nothing to drop
+                    Assertions.assertArrayEquals(expected, a.bmm(b).data);
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            });
+            other.start();
+            other.join();
+            Assertions.assertNull(error.get());
+            Assertions.assertEquals(3, scratch.reused() + scratch.allocated());
+        }
+        try (ScratchArena scratch = ScratchArena.open()) {
+            Assertions.assertArrayEquals(expected, a.bmm(b).data); // Reused buffer, zeroed before accumulating
+            Assertions.assertEquals(1, scratch.reused());
+        }
+    }
+
+    @Test
+    @DisplayName("Closing out of order or from another thread is rejected")
+    void testMisuse() throws InterruptedException {
+        ScratchArena outer = ScratchArena.open();
+        ScratchArena inner = ScratchArena.open();
+        Assertions.assertThrows(IllegalStateException.class, outer::close);
+
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread other = new Thread(() -> {
+            try {
+                inner.close();
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        other.start();
+        other.join();
+        Assertions.assertInstanceOf(IllegalStateException.class, error.get());
+
+        inner.close();
+        outer.close();
+        outer.close(); // Closing twice is a no-op
+        Assertions.assertNull(ScratchArena.active());
+    }
+
+    @Test
+    @DisplayName("Report the allocation per training step with and without an arena")
+    void testAllocationPerStep() {
+        SimdMatrix x = SimdMatrix.random(64, 256);
+        SimdMatrix w = SimdMatrix.random(256, 128);
+        SimdMatrix bias = SimdMatrix.random(1, 128);
+        SimdMatrix target = SimdMatrix.random(64, 128);
+        int steps = 200;
+        for (int i = 0; i < steps; i++) { // Warm up, so that the kernels are compiled and do not box vectors
+            step(x, w, bias, target, false);
+            step(x, w, bias, target, true);
+        }
+
+        long heapStart = Metrics.threadAllocatedBytes();
+        for (int i = 0; i < steps; i++) step(x, w, bias, target, false);
+        long heapBytes = Metrics.threadAllocatedBytes() - heapStart;
+
+        arenaAllocations = 0;
+        arenaReuses = 0;
+        long arenaStart = Metrics.threadAllocatedBytes();
+        for (int i = 0; i < steps; i++) step(x, w, bias, target, true);
+        long arenaBytes = Metrics.threadAllocatedBytes() - arenaStart;
+
+        System.out.println("--- Allocation per step [64x256 * 256x128] ---");
+        System.out.printf("Heap:  %d bytes%n", heapBytes / steps);
+        System.out.printf("Arena: %d bytes%n", arenaBytes / steps);
+        // The byte counts also depend on how far the JIT got, the buffer counts do not: after the first step every buffer is reused
+        Assertions.assertEquals(0, arenaAllocations, "Arena allocated new buffers after warm-up");
+        Assertions.assertEquals(4L * steps, arenaReuses);
+    }
+
+    private float step(SimdMatrix x, SimdMatrix w, SimdMatrix bias, SimdMatrix target, boolean arena) {
+        if (!arena) {
+            SimdMatrix error = x.matmul(w).addRowVector(bias).sub(target);
+            return error.elementMult(error).sum();
+        }
+        try (ScratchArena scratch = ScratchArena.open()) {
+            SimdMatrix error = x.matmul(w).addRowVector(bias).sub(target);
+            float loss = error.elementMult(error).sum();
+            arenaAllocations += scratch.allocated();
+            arenaReuses += scratch.reused();
+            return loss;
+        }
+    }
+}
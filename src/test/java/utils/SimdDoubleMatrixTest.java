@@ -0,0 +1,118 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+@DisplayName("Double-Precision SIMD Matrix Tests")
+public class SimdDoubleMatrixTest {
+
+    private SimdDoubleMatrix random(int rows, int cols, long seed) {
+        return SimdDoubleMatrix.of(SimdMatrix.random(rows, cols, seed));
+    }
+
+    /**
+     * Helper method: Naive Matrix Multiplication (Triple Loop) in double precision.
+     */
+    private double[] naiveMatmul(SimdDoubleMatrix a, SimdDoubleMatrix b) {
+        double[] c = new double[a.rows * b.cols];
+        for (int i = 0; i < a.rows; i++) {
+            for (int k = 0; k < a.cols; k++) {
+                for (int j = 0; j < b.cols; j++) {
+                    c[i * b.cols + j] += a.data[i * a.cols + k] * b.data[k * b.cols + j];
+                }
+            }
+        }
+        return c;
+    }
+
+    @Test
+    @DisplayName("Matmul matches the naive triple loop for every kernel configuration")
+    void testMatmul() {
+        SimdDoubleMatrix a = random(37, 53, 1);
+        SimdDoubleMatrix b = random(53, 71, 2); // 71 columns, so that all accumulator loops and the tail run
+        double[] expected = naiveMatmul(a, b);
+        Assertions.assertArrayEquals(expected, a.matmul(b).data, 1e-15);
+        for (KernelConfig config : new KernelConfig[]{new KernelConfig(16, 24, 1, 1), new KernelConfig(64, 64, 4, Long.MAX_VALUE)}) {
+            // Products are added in the same order for every configuration, so the results are bitwise identical
+            Assertions.assertArrayEquals(a.matmul(b).data, a.matmul(b, config).data);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> a.matmul(a));
+    }
+
+    @Test
+    @DisplayName("Element-wise ops, reductions and transpose match scalar loops")
+    void testElementWise() {
+        SimdDoubleMatrix a = random(9, 31, 3);
+        SimdDoubleMatrix b = random(9, 31, 4);
+        SimdDoubleMatrix bias = random(1, 31, 5);
+        SimdDoubleMatrix sum = a.addRowVector(bias);
+        SimdDoubleMatrix product = a.elementMult(b);
+        SimdDoubleMatrix difference = a.sub(b);
+        SimdDoubleMatrix scaled = a.scale(-2.5);
+        SimdDoubleMatrix t = a.transpose();
+        SimdDoubleMatrix axpy = a.copy();
+        axpy.addScaledInPlace(b, 0.5);
+
+        double total = 0, dot = 0, max = -Double.MAX_VALUE;
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 31; j++) {
+                int k = i * 31 + j;
+                Assertions.assertEquals(a.data[k] + bias.data[j], sum.data[k]);
+                Assertions.assertEquals(a.data[k] * b.data[k], product.data[k]);
+                Assertions.assertEquals(a.data[k] - b.data[k], difference.data[k]);
+                Assertions.assertEquals(a.data[k] * -2.5, scaled.data[k]);
+                Assertions.assertEquals(a.data[k], t.data[j * 9 + i]);
+                Assertions.assertEquals(a.data[k] + 0.5 * b.data[k], axpy.data[k]);
+                total += a.data[k];
+                dot += a.data[k] * b.data[k];
+                max = Math.max(max, a.data[k]);
+            }
+        }
+        Assertions.assertEquals(total, a.sum(), 1e-12);
+        Assertions.assertEquals(dot, a.dot(b), 1e-12);
+        Assertions.assertEquals(max, a.max());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> a.sub(t));
+    }
+
+    @Test
+    @DisplayName("Conversion to double is exact, and double precision recovers what float loses")
+    void testConversionAndAccuracy() {
+        SimdMatrix f = SimdMatrix.random(5, 7, 6);
+        Assertions.assertArrayEquals(f.data, SimdDoubleMatrix.of(f).toFloat().data);
+
+        // Large sum: once a partial sum is big, float rounds away most of every small addend, double keeps it
+        int n = 1 << 22;
+        SimdMatrix values = new SimdMatrix(1, n);
+        Arrays.fill(values.data, 0.1f);
+        double exact = n * (double) 0.1f;
+        Assertions.assertEquals(exact, SimdDoubleMatrix.of(values).sum(), 1e-6);
+        Assertions.assertTrue(Math.abs(values.sum() - exact) > 1.0, "Float sum unexpectedly accurate: " + values.sum() + " vs " + exact);
+    }
+
+    @Test
+    @DisplayName("Benchmark double-precision SIMD matmul against the naive triple loop")
+    void testMatmulThroughput() {
+        int size = 256;
+        SimdDoubleMatrix a = random(size, size, 7);
+        SimdDoubleMatrix b = random(size, size, 8);
+        for (int i = 0; i < 5; i++) a.matmul(b); // Warm up
+
+        long startSimd = System.nanoTime();
+        SimdDoubleMatrix c = a.matmul(b);
+        long endSimd = System.nanoTime();
+
+        long startNaive = System.nanoTime();
+        double[] expected = naiveMatmul(a, b);
+        long endNaive = System.nanoTime();
+
+        Assertions.assertArrayEquals(expected, c.data, 1e-12);
+        double flops = 2.0 * size * size * size;
+        System.out.println("--- Double Matmul [" + size + " x " + size + "] ---");
+        System.out.printf("SIMD Time:  %.3f ms (%.2f GFLOP/s)%n", (endSimd - startSimd) / 1e6, flops / (endSimd - startSimd));
+        System.out.printf("Naive Time: %.3f ms (%.2f GFLOP/s)%n", (endNaive - startNaive) / 1e6, flops / (endNaive - startNaive));
+        System.out.printf("Speedup:    %.1fx%n", (double) (endNaive - startNaive) / (endSimd - startSimd));
+    }
+}
@@ -0,0 +1,107 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Batched 3-D Tensor Tests")
+public class SimdTensorTest {
+
+    @Test
+    @DisplayName("Batched matmul matches a loop of SimdMatrix products")
+    void testBmmMatchesMatmul() {
+        SimdTensor a = SimdTensor.random(5, 7, 33);
+        SimdTensor b = SimdTensor.random(5, 33, 19);
+        SimdTensor c = a.bmm(b);
+
+        Assertions.assertEquals("(5, 7, 19)", c.shape());
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertArrayEquals(a.matrix(i).matmul(b.matrix(i)).data, c.matrix(i).data, "Mismatch in batch entry " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("Batched matmul broadcasts a single matrix over the batch")
+    void testBmmBroadcast() {
+        SimdTensor x = SimdTensor.random(6, 4, 10);
+        SimdMatrix weights = SimdMatrix.random(10, 3);
+        SimdTensor y = x.bmm(SimdTensor.of(weights));
+
+        Assertions.assertEquals("(6, 4, 3)", y.shape());
+        for (int i = 0; i < 6; i++) {
+            Assertions.assertArrayEquals(x.matrix(i).matmul(weights).data, y.matrix(i).data);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> x.bmm(SimdTensor.random(2, 10, 3)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> x.bmm(SimdTensor.random(6, 4, 3)));
+    }
+
+    @Test
+    @DisplayName("Element-wise operations broadcast dimensions of size 1")
+    void testBroadcasting() {
+        SimdTensor x = SimdTensor.random(3, 5, 37);
+        SimdTensor bias = SimdTensor.random(1, 1, 37); // Same bias row for every entry and row
+        SimdTensor rowScale = SimdTensor.random(3, 5, 1); // One factor per row
+        SimdTensor shift = SimdTensor.random(1, 5, 37);
+
+        SimdTensor added = x.add(bias);
+        SimdTensor scaled = x.mul(rowScale);
+        SimdTensor shifted = shift.sub(x); // Broadcast on the left operand
+        for (int b = 0; b < 3; b++) {
+            for (int i = 0; i < 5; i++) {
+                for (int j = 0; j < 37; j++) {
+                    Assertions.assertEquals(x.get(b, i, j) + bias.get(0, 0, j), added.get(b, i, j));
+                    Assertions.assertEquals(x.get(b, i, j) * rowScale.get(b, i, 0), scaled.get(b, i, j));
+                    Assertions.assertEquals(shift.get(0, i, j) - x.get(b, i, j), shifted.get(b, i, j));
+                }
+            }
+        }
+
+        // Both operands broadcast: (3, 1, 1) + (1, 5, 37) -> (3, 5, 37)
+        SimdTensor perEntry = SimdTensor.random(3, 1, 1);
+        SimdTensor both = perEntry.add(shift);
+        Assertions.assertEquals("(3, 5, 37)", both.shape());
+        Assertions.assertEquals(perEntry.get(2, 0, 0) + shift.get(0, 4, 36), both.get(2, 4, 36));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> x.add(SimdTensor.random(3, 4, 37)));
+    }
+
+    @Test
+    @DisplayName("Batched matmul of many small matrices matches a loop of matmul calls (timing printed)")
+    void testBmmThroughput() {
+        int batch = 4096;
+        int size = 32;
+        SimdTensor a = SimdTensor.random(batch, size, size);
+        SimdTensor b = SimdTensor.random(batch, size, size);
+        SimdMatrix[] as = new SimdMatrix[batch];
+        SimdMatrix[] bs = new SimdMatrix[batch];
+        for (int i = 0; i < batch; i++) {
+            as[i] = a.matrix(i);
+            bs[i] = b.matrix(i);
+        }
+
+        // Warm up both paths
+        for (int r = 0; r < 3; r++) {
+            a.bmm(b);
+            for (int i = 0; i < batch; i++) as[i].matmul(bs[i]);
+        }
+
+        long startBmm = System.nanoTime();
+        SimdTensor c = a.bmm(b);
+        long endBmm = System.nanoTime();
+
+        long startLoop = System.nanoTime();
+        SimdMatrix[] cs = new SimdMatrix[batch];
+        for (int i = 0; i < batch; i++) cs[i] = as[i].matmul(bs[i]);
+        long endLoop = System.nanoTime();
+
+        for (int i = 0; i < batch; i += 511) {
+            Assertions.assertArrayEquals(cs[i].data, c.matrix(i).data);
+        }
+
+        double gflops = 2.0 * batch * size * size * size / (endBmm - startBmm);
+        System.out.println("--- Test Passed ---");
+        System.out.printf("Batch: %d x [%d x %d] * [%d x %d]%n", batch, size, size, size, size);
+        System.out.printf("BMM Time:  %.3f ms (%.2f GFLOP/s)%n", (endBmm - startBmm) / 1e6, gflops);
+        System.out.printf("Loop Time: %.3f ms%n", (endLoop - startLoop) / 1e6);
+    }
+}
@@ -0,0 +1,90 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Strassen-Winograd Matrix Multiplication Tests")
+public class StrassenTest {
+
+    @Test
+    @DisplayName("Strassen matches the classical kernel for square and padded rectangular shapes")
+    void testMatchesClassical() {
+        int[][] shapes = {{256, 256, 256}, {130, 70, 100}, {64, 96, 33}};
+        for (int[] shape : shapes) {
+            SimdMatrix a = SimdMatrix.random(shape[0], shape[1]);
+            SimdMatrix b = SimdMatrix.random(shape[1], shape[2]);
+            SimdMatrix expected = a.matmul(b);
+            SimdMatrix actual = Strassen.multiply(a, b, 16);
+
+            Assertions.assertEquals(expected.rows, actual.rows);
+            Assertions.assertEquals(expected.cols, actual.cols);
+            for (int i = 0; i < expected.data.length; i++) {
+                Assertions.assertEquals(expected.data[i], actual.data[i], 1e-4f, "Mismatch at index " + i + " for " + a.shape() + " * " + b.shape());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Recursion depth follows the cutoff, small products use the classical kernel")
+    void testDepth() {
+        Assertions.assertEquals(0, Strassen.depth(1000, 1000, 1000, 512));
+        Assertions.assertEquals(1, Strassen.depth(1024, 1024, 1024, 512));
+        Assertions.assertEquals(3, Strassen.depth(4096, 4096, 4096, 512));
+        Assertions.assertEquals(1, Strassen.depth(4096, 1024, 4096, 512)); // Limited by the smallest dimension
+
+        SimdMatrix a = SimdMatrix.random(40, 40);
+        SimdMatrix b = SimdMatrix.random(40, 40);
+        Assertions.assertArrayEquals(a.matmul(b).data, Strassen.multiply(a, b, 32).data);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Strassen.multiply(a, SimdMatrix.random(20, 40), 32));
+    }
+
+    @Test
+    @DisplayName("Report the allocation per call: workspaces are cached, the result comes from the arena")
+    void testAllocationPerCall() {
+        SimdMatrix a = SimdMatrix.random(200, 256); // Padded to 256 rows
+        SimdMatrix b = SimdMatrix.random(256, 256);
+        SimdMatrix expected = a.matmul(b);
+        int calls = 50;
+        for (int i = 0; i < calls; i++) { // Warm up, so that the kernels are compiled and do not box vectors
+            try (ScratchArena scratch = ScratchArena.open()) {
+                Strassen.multiply(a, b, 64);
+            }
+        }
+
+        long reused = 0;
+        long start = Metrics.threadAllocatedBytes();
+        for (int i = 0; i < calls; i++) {
+            try (ScratchArena scratch = ScratchArena.open()) {
+                SimdMatrix c = Strassen.multiply(a, b, 64);
+                reused += scratch.reused();
+                if (i == 0) Assertions.assertArrayEquals(expected.data, c.data, 1e-3f); // The reused workspace is dirty
+            }
+        }
+        long bytes = (Metrics.threadAllocatedBytes() - start) / calls;
+
+        // A fresh top-level workspace alone would be (3 padded operands + one level of temporaries) floats
+        long workspaceBytes = Float.BYTES * (256L * 256 * 3 + 15L * 128 * 128);
+        System.out.println("--- Strassen allocation per call [200x256 * 256x256, depth 2] ---");
+        System.out.printf("Allocated: %d bytes (fresh workspace: %d bytes)%n", bytes, workspaceBytes);
+        Assertions.assertEquals(calls, reused, "Result was not taken from the arena");
+        Assertions.assertTrue(bytes < workspaceBytes / 4, "Allocated " + bytes + " bytes per call");
+    }
+
+    @Test
+    @DisplayName("Report the accuracy loss and speed of Strassen against the classical kernel")
+    void testAccuracyReport() {
+        int n = 1024;
+        SimdMatrix a = SimdMatrix.random(n, n);
+        SimdMatrix b = SimdMatrix.random(n, n);
+        Strassen.compare(a, b, 128); // Warm up
+
+        System.out.println("--- Strassen vs Classical [" + n + " x " + n + "] ---");
+        for (int cutoff : new int[]{512, 256, 128}) {
+            Strassen.Accuracy accuracy = Strassen.compare(a, b, cutoff);
+            System.out.printf("cutoff %4d (depth %d): %s%n", cutoff, Strassen.depth(n, n, n, cutoff), accuracy);
+            // Each level loses a little precision, but the result must stay close to single precision
+            Assertions.assertTrue(accuracy.maxRelError() < 1e-4, "Relative error too large: " + accuracy);
+        }
+    }
+}